@@ -0,0 +1,83 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spin, then yield, then park with exponential growing time while there is no
+ * keyboard activity, back to spin as soon as an event is read.
+ *
+ * @author dyorgio
+ */
+public final class BackoffPollingScheduler implements PollingScheduler {
+
+    private final int spinCycles;
+    private final int yieldCycles;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    private int idleCycles;
+    private long parkNanos;
+
+    /**
+     * @param spinCycles idle cycles without waiting.
+     * @param yieldCycles idle cycles yielding CPU after spin ones.
+     * @param minParkNanos first park time after yield cycles.
+     * @param maxParkNanos max park time, park time doubles on each idle cycle
+     * until this value.
+     */
+    public BackoffPollingScheduler(int spinCycles, int yieldCycles, long minParkNanos, long maxParkNanos) {
+        if (spinCycles < 0 || yieldCycles < 0) {
+            throw new IllegalArgumentException("Spin and yield cycles cannot be negative.");
+        }
+        if (minParkNanos < 1 || maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException("Park nanos must be positive and max cannot be lower than min.");
+        }
+        this.spinCycles = spinCycles;
+        this.yieldCycles = yieldCycles;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+        this.parkNanos = minParkNanos;
+    }
+
+    @Override
+    public void awaitNextCycle(boolean active) throws InterruptedException {
+        if (active) {
+            idleCycles = 0;
+            parkNanos = minParkNanos;
+        } else if (idleCycles < spinCycles + yieldCycles) {
+            idleCycles++;
+        }
+
+        if (idleCycles < spinCycles) {
+            // spin
+        } else if (idleCycles < spinCycles + yieldCycles) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(this, parkNanos);
+            parkNanos = Math.min(parkNanos * 2, maxParkNanos);
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BackoffPollingScheduler{" + "spinCycles=" + spinCycles + ", yieldCycles=" + yieldCycles + ", minParkNanos=" + minParkNanos + ", maxParkNanos=" + maxParkNanos + '}';
+    }
+}
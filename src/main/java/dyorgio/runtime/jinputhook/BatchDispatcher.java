@@ -0,0 +1,158 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Double buffer between polling threads and {@link GlobalKeyBatchListener}
+ * thread.<br>
+ * Each polling thread collects events of one cycle in its own batch and
+ * appends them to filling batch at end of cycle (one lock per cycle), filling
+ * batch is swapped with the delivered one if batch thread is idle, otherwise
+ * events keep accumulating (up to {@link #MAX_PENDING}, newer events are
+ * dropped).
+ *
+ * @author dyorgio
+ */
+final class BatchDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchDispatcher.class.getName());
+
+    static final int MAX_PENDING = 65536;
+
+    private final Object listenersLock = new Object();
+    private volatile GlobalKeyBatchListener[] listeners = new GlobalKeyBatchListener[0];
+
+    // guarded by this
+    private KeyBatch filling = new KeyBatch();
+    private KeyBatch ready;
+    private KeyBatch spare = new KeyBatch();
+    private Thread thread;
+    private long dropped;
+
+    boolean isActive() {
+        return listeners.length > 0;
+    }
+
+    boolean addListener(GlobalKeyBatchListener listener) {
+        synchronized (listenersLock) {
+            GlobalKeyBatchListener[] newListeners = Snapshots.add(listeners, listener);
+            if (newListeners == listeners) {
+                return false;
+            }
+            listeners = newListeners;
+            startThread();
+            return true;
+        }
+    }
+
+    boolean removeListener(GlobalKeyBatchListener listener) {
+        synchronized (listenersLock) {
+            GlobalKeyBatchListener[] newListeners = Snapshots.remove(listeners, listener);
+            if (newListeners == listeners) {
+                return false;
+            }
+            listeners = newListeners;
+            return true;
+        }
+    }
+
+    /**
+     * Called from polling threads at end of each poll cycle, appends cycle
+     * events to filling batch and hands it to batch thread if idle.
+     *
+     * @param cycle events of poll cycle, cleared by caller (published to
+     * each context).
+     */
+    synchronized void publish(KeyBatch cycle) {
+        if (cycle.size() > 0) {
+            int accepted = Math.min(cycle.size(), MAX_PENDING - filling.size());
+            filling.addAll(cycle, accepted);
+            dropped += cycle.size() - accepted;
+        }
+        if (filling.size() > 0 && ready == null && spare != null) {
+            ready = filling;
+            filling = spare;
+            spare = null;
+            notify();
+        }
+    }
+
+    /**
+     * @return events dropped because batch thread didn't keep up.
+     */
+    synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Stops batch thread, pending events are discarded.
+     */
+    void shutdown() {
+        synchronized (listenersLock) {
+            listeners = new GlobalKeyBatchListener[0];
+        }
+        synchronized (this) {
+            if (thread != null) {
+                thread.interrupt();
+                thread = null;
+            }
+        }
+    }
+
+    private synchronized void startThread() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(null, null, "BatchListenerThread", 64l * 1024l) {
+            {
+                setDaemon(true);
+            }
+
+            @Override
+            public void run() {
+                try {
+                    while (!isInterrupted()) {
+                        KeyBatch batch;
+                        synchronized (BatchDispatcher.this) {
+                            while (ready == null) {
+                                BatchDispatcher.this.wait();
+                            }
+                            batch = ready;
+                        }
+                        for (GlobalKeyBatchListener listener : listeners) {
+                            try {
+                                listener.keysChanged(batch);
+                            } catch (Throwable t) {
+                                LOGGER.log(Level.SEVERE, "Problems on listener " + listener, t);
+                            }
+                        }
+                        batch.clear();
+                        synchronized (BatchDispatcher.this) {
+                            ready = null;
+                            spare = batch;
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        thread.start();
+    }
+}
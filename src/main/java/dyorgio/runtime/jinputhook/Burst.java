@@ -0,0 +1,99 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Immutable text typed by one device in a burst.
+ *
+ * @author dyorgio
+ */
+public final class Burst {
+
+    private final String text;
+    private final int deviceId;
+    private final String deviceName;
+    private final int keyCount;
+    private final long firstNanos;
+    private final long lastNanos;
+    private final Key terminator;
+
+    Burst(String text, int deviceId, String deviceName, int keyCount, long firstNanos, long lastNanos, Key terminator) {
+        this.text = text;
+        this.deviceId = deviceId;
+        this.deviceName = deviceName;
+        this.keyCount = keyCount;
+        this.firstNanos = firstNanos;
+        this.lastNanos = lastNanos;
+        this.terminator = terminator;
+    }
+
+    /**
+     * @return typed text, without terminator.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    /**
+     * @return key presses of burst, including keys without text (like
+     * shift).
+     */
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when first key was read.
+     */
+    public long getFirstNanos() {
+        return firstNanos;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when last key (or terminator) was
+     * read.
+     */
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public long getDurationNanos() {
+        return lastNanos - firstNanos;
+    }
+
+    /**
+     * @return key that ended burst or <code>null</code> if it ended by
+     * inter-key gap or max length.
+     */
+    public Key getTerminator() {
+        return terminator;
+    }
+
+    @Override
+    public String toString() {
+        return "Burst{" + "text=" + text + ", deviceId=" + deviceId + ", deviceName=" + deviceName + ", durationNanos=" + getDurationNanos() + ", terminator=" + terminator + '}';
+    }
+}
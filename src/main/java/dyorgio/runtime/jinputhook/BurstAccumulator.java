@@ -0,0 +1,130 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.TimeUnit;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Burst being typed by one device, see {@link BurstOptions}.<br>
+ * Used only by device polling thread, text is accumulated on a reusable char
+ * buffer and a {@link Burst} is created only when burst completes. Key to
+ * char mapping follows US layout.
+ *
+ * @author dyorgio
+ */
+final class BurstAccumulator {
+
+    private static final char[] CHARS = new char[KeyIndex.CAPACITY];
+    private static final char[] SHIFTED_CHARS = new char[KeyIndex.CAPACITY];
+    private static final int LSHIFT = KeyIndex.ordinal(Key.LSHIFT);
+    private static final int RSHIFT = KeyIndex.ordinal(Key.RSHIFT);
+
+    static {
+        map("abcdefghijklmnopqrstuvwxyz", "ABCDEFGHIJKLMNOPQRSTUVWXYZ",
+                Key.A, Key.B, Key.C, Key.D, Key.E, Key.F, Key.G, Key.H, Key.I, Key.J, Key.K, Key.L, Key.M,
+                Key.N, Key.O, Key.P, Key.Q, Key.R, Key.S, Key.T, Key.U, Key.V, Key.W, Key.X, Key.Y, Key.Z);
+        map("1234567890", "!@#$%^&*()",
+                Key._1, Key._2, Key._3, Key._4, Key._5, Key._6, Key._7, Key._8, Key._9, Key._0);
+        map("-=[];'`\\,./ ", "_+{}:\"~|<>? ",
+                Key.MINUS, Key.EQUALS, Key.LBRACKET, Key.RBRACKET, Key.SEMICOLON, Key.APOSTROPHE,
+                Key.GRAVE, Key.BACKSLASH, Key.COMMA, Key.PERIOD, Key.SLASH, Key.SPACE);
+        map("0123456789+-*/.=,", "0123456789+-*/.=,",
+                Key.NUMPAD0, Key.NUMPAD1, Key.NUMPAD2, Key.NUMPAD3, Key.NUMPAD4, Key.NUMPAD5, Key.NUMPAD6,
+                Key.NUMPAD7, Key.NUMPAD8, Key.NUMPAD9, Key.ADD, Key.SUBTRACT, Key.MULTIPLY, Key.DIVIDE,
+                Key.DECIMAL, Key.NUMPADEQUAL, Key.NUMPADCOMMA);
+    }
+
+    private static void map(String chars, String shiftedChars, Key... keys) {
+        for (int i = 0; i < keys.length; i++) {
+            int ordinal = KeyIndex.ordinal(keys[i]);
+            CHARS[ordinal] = chars.charAt(i);
+            SHIFTED_CHARS[ordinal] = shiftedChars.charAt(i);
+        }
+    }
+
+    private final int minLength;
+    private final long maxGapNanos;
+    private final boolean[] terminators = new boolean[KeyIndex.CAPACITY];
+    private final char[] text;
+    private int length;
+    private int keyCount;
+    private long firstNanos;
+    private long lastNanos;
+
+    BurstAccumulator(BurstOptions options) {
+        this.minLength = options.getMinLength();
+        this.maxGapNanos = TimeUnit.MILLISECONDS.toNanos(options.getMaxGapMillis());
+        this.text = new char[options.getMaxLength()];
+        for (Key key : options.getTerminators()) {
+            int ordinal = KeyIndex.ordinal(key);
+            if (ordinal != -1) {
+                terminators[ordinal] = true;
+            }
+        }
+    }
+
+    /**
+     * @param nanos current time.
+     * @return burst completed by inter-key gap or <code>null</code>.
+     */
+    Burst expire(int deviceId, String deviceName, long nanos) {
+        if (keyCount > 0 && nanos - lastNanos > maxGapNanos) {
+            return complete(deviceId, deviceName, null);
+        }
+        return null;
+    }
+
+    /**
+     * @param ordinal key ordinal, -1 if key isn't indexed.
+     * @param keysPressed keys pressed before this one.
+     * @return burst completed by this key or <code>null</code>.
+     */
+    Burst press(int deviceId, String deviceName, Key key, int ordinal, KeySet keysPressed, long nanos) {
+        if (ordinal != -1 && terminators[ordinal]) {
+            if (keyCount == 0) {
+                return null;
+            }
+            lastNanos = nanos;
+            return complete(deviceId, deviceName, key);
+        }
+        if (keyCount++ == 0) {
+            firstNanos = nanos;
+        }
+        lastNanos = nanos;
+        if (ordinal != -1) {
+            boolean shift = (LSHIFT != -1 && keysPressed.contains(LSHIFT)) || (RSHIFT != -1 && keysPressed.contains(RSHIFT));
+            char c = shift ? SHIFTED_CHARS[ordinal] : CHARS[ordinal];
+            if (c != 0) {
+                text[length++] = c;
+                if (length == text.length) {
+                    return complete(deviceId, deviceName, null);
+                }
+            }
+        }
+        return null;
+    }
+
+    private Burst complete(int deviceId, String deviceName, Key terminator) {
+        Burst burst = null;
+        if (length >= minLength) {
+            burst = new Burst(new String(text, 0, length), deviceId, deviceName, keyCount, firstNanos, lastNanos, terminator);
+        }
+        length = 0;
+        keyCount = 0;
+        return burst;
+    }
+}
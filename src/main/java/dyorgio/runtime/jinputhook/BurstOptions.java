@@ -0,0 +1,143 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * How key presses are aggregated into {@link Burst}s for
+ * {@link BurstListener}s.<br>
+ * A burst starts on first key press of a device and ends on a terminator key,
+ * on max length or when next key takes more than max gap. Bursts shorter than
+ * min length are discarded (human typing).
+ *
+ * @author dyorgio
+ */
+public final class BurstOptions {
+
+    private long maxGapMillis = 50;
+    private int minLength = 4;
+    private int maxLength = 1024;
+    private Set<Key> terminators = Collections.unmodifiableSet(new HashSet(Arrays.asList(Key.RETURN, Key.NUMPADENTER)));
+    private Pattern devicePattern;
+    private boolean exclusive;
+
+    public long getMaxGapMillis() {
+        return maxGapMillis;
+    }
+
+    /**
+     * @param maxGapMillis max time between two key presses of a burst
+     * (default 50ms).
+     * @return this options.
+     */
+    public BurstOptions setMaxGapMillis(long maxGapMillis) {
+        if (maxGapMillis < 1) {
+            throw new IllegalArgumentException("Max gap must be 1ms or more.");
+        }
+        this.maxGapMillis = maxGapMillis;
+        return this;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * @param minLength min characters of a burst (default 4).
+     * @return this options.
+     */
+    public BurstOptions setMinLength(int minLength) {
+        if (minLength < 1) {
+            throw new IllegalArgumentException("Min length must be 1 or more.");
+        }
+        this.minLength = minLength;
+        return this;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @param maxLength characters of burst buffer, a full burst is completed
+     * (default 1024).
+     * @return this options.
+     */
+    public BurstOptions setMaxLength(int maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("Max length must be 1 or more.");
+        }
+        this.maxLength = maxLength;
+        return this;
+    }
+
+    public Set<Key> getTerminators() {
+        return terminators;
+    }
+
+    /**
+     * @param terminators keys that complete a burst (default
+     * {@link Key#RETURN} and {@link Key#NUMPADENTER}), none to end bursts
+     * only by gap.
+     * @return this options.
+     */
+    public BurstOptions setTerminators(Key... terminators) {
+        if (terminators == null || Arrays.asList(terminators).contains(null)) {
+            throw new IllegalArgumentException("Terminators cannot be null.");
+        }
+        this.terminators = Collections.unmodifiableSet(new HashSet(Arrays.asList(terminators)));
+        return this;
+    }
+
+    public Pattern getDevicePattern() {
+        return devicePattern;
+    }
+
+    /**
+     * @param devicePattern regex of device names in burst mode,
+     * <code>null</code> for all devices (default).
+     * @return this options.
+     */
+    public BurstOptions setDevicePattern(String devicePattern) {
+        this.devicePattern = devicePattern == null ? null : Pattern.compile(devicePattern);
+        return this;
+    }
+
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
+    /**
+     * @param exclusive <code>true</code> to don't deliver key and shortcut
+     * events of burst mode devices while there are burst listeners (default
+     * <code>false</code>), recommended with a scanners device pattern.
+     * @return this options.
+     */
+    public BurstOptions setExclusive(boolean exclusive) {
+        this.exclusive = exclusive;
+        return this;
+    }
+
+    boolean matches(String deviceName) {
+        return devicePattern == null || (deviceName != null && devicePattern.matcher(deviceName).find());
+    }
+}
@@ -0,0 +1,93 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * How events are delivered to one listener.
+ *
+ * @author dyorgio
+ */
+public final class DeliveryPolicy {
+
+    public static enum Mode {
+        /**
+         * Shared dispatcher of JInputHook (see {@link DispatchMode}).
+         */
+        DISPATCHER,
+        /**
+         * Directly on polling thread, listener must be fast.
+         */
+        SYNCHRONOUS,
+        /**
+         * Own thread and bounded queue, new events are dropped when full.
+         */
+        BOUNDED,
+        /**
+         * Own thread and bounded queue, oldest events are dropped when full.
+         */
+        DROP_OLDEST
+    }
+
+    private static final DeliveryPolicy DISPATCHER = new DeliveryPolicy(Mode.DISPATCHER, 0);
+    private static final DeliveryPolicy SYNCHRONOUS = new DeliveryPolicy(Mode.SYNCHRONOUS, 0);
+
+    private final Mode mode;
+    private final int capacity;
+
+    private DeliveryPolicy(Mode mode, int capacity) {
+        this.mode = mode;
+        this.capacity = capacity;
+    }
+
+    public static DeliveryPolicy dispatcher() {
+        return DISPATCHER;
+    }
+
+    public static DeliveryPolicy synchronous() {
+        return SYNCHRONOUS;
+    }
+
+    public static DeliveryPolicy bounded(int capacity) {
+        return new DeliveryPolicy(Mode.BOUNDED, checkCapacity(capacity));
+    }
+
+    public static DeliveryPolicy dropOldest(int capacity) {
+        return new DeliveryPolicy(Mode.DROP_OLDEST, checkCapacity(capacity));
+    }
+
+    private static int checkCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be 1 or more.");
+        }
+        return capacity;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return queue capacity of async modes, 0 otherwise.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return capacity == 0 ? mode.toString() : mode + "(" + capacity + ")";
+    }
+}
@@ -0,0 +1,62 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * Delivery counters of one listener.
+ *
+ * @author dyorgio
+ */
+public interface DeliveryStats {
+
+    DeliveryPolicy getPolicy();
+
+    /**
+     * @return callbacks executed.
+     */
+    long getDelivered();
+
+    /**
+     * @return events dropped because listener queue was full.
+     */
+    long getDropped();
+
+    /**
+     * @return events waiting on listener queue.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return total time spent inside listener callbacks.
+     */
+    long getCallbackNanos();
+
+    /**
+     * @return slowest listener callback.
+     */
+    long getMaxCallbackNanos();
+
+    /**
+     * @return total time between events read and listener callbacks start.
+     * @see DispatchContext#getDispatchLatencyNanos()
+     */
+    long getDispatchLatencyNanos();
+
+    /**
+     * @return highest time between an event read and listener callback start.
+     */
+    long getMaxDispatchLatencyNanos();
+}
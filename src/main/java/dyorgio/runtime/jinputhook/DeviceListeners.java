@@ -0,0 +1,73 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * Immutable device-indexed table of listeners, replaced when listeners or
+ * devices change.<br>
+ * Each device slot has only listeners whose {@link DeviceSelector} matches it,
+ * devices without selected listeners share the same array.
+ *
+ * @author dyorgio
+ */
+final class DeviceListeners {
+
+    static final DeviceListeners EMPTY = new DeviceListeners(ListenerDelivery.EMPTY, new KeyboardState[0], new ListenerDelivery[0][]);
+
+    /**
+     * All registered listeners, in registration order.
+     */
+    final ListenerDelivery[] all;
+    // device of each slot, a removed device slot may be reused
+    private final KeyboardState[] owners;
+    private final ListenerDelivery[][] byDevice;
+    /**
+     * Listeners without selector, for devices not resolved yet.
+     */
+    private final ListenerDelivery[] anyDevice;
+
+    DeviceListeners(ListenerDelivery[] all, KeyboardState[] owners, ListenerDelivery[][] byDevice) {
+        this.all = all;
+        this.owners = owners;
+        this.byDevice = byDevice;
+        ListenerDelivery[] unselected = all;
+        for (ListenerDelivery delivery : all) {
+            if (delivery.selector != null) {
+                unselected = Snapshots.remove(unselected, delivery);
+            }
+        }
+        this.anyDevice = unselected;
+    }
+
+    /**
+     * @param keyboardState polled device.
+     * @return listeners of device.
+     */
+    ListenerDelivery[] get(KeyboardState keyboardState) {
+        int slot = keyboardState.slot;
+        if (slot < byDevice.length && owners[slot] == keyboardState) {
+            ListenerDelivery[] listeners = byDevice[slot];
+            if (listeners != null) {
+                return listeners;
+            }
+        }
+        return anyDevice;
+    }
+
+    boolean isEmpty() {
+        return all.length == 0;
+    }
+}
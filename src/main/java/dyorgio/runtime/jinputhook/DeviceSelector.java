@@ -0,0 +1,119 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import dyorgio.runtime.jinputhook.source.KeyboardDevice;
+import java.util.regex.Pattern;
+
+/**
+ * Devices a listener is subscribed to.<br>
+ * Listeners are resolved per device when listeners or devices change, so a
+ * key event is dispatched only to listeners of its device.
+ *
+ * @author dyorgio
+ */
+public final class DeviceSelector {
+
+    private static final int ID = 0;
+    private static final int DEVICE_ID = 1;
+    private static final int NAME = 2;
+    private static final int BURST = 3;
+
+    private static final DeviceSelector BURST_DEVICES = new DeviceSelector(BURST, null, -1, null);
+
+    private final int kind;
+    private final String id;
+    private final int deviceId;
+    private final Pattern namePattern;
+
+    private DeviceSelector(int kind, String id, int deviceId, Pattern namePattern) {
+        this.kind = kind;
+        this.id = id;
+        this.deviceId = deviceId;
+        this.namePattern = namePattern;
+    }
+
+    /**
+     * @param id stable id of device, see {@link KeyboardDevice#getId()}.
+     * @return selector of device with id.
+     */
+    public static DeviceSelector id(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Device id cannot be null.");
+        }
+        return new DeviceSelector(ID, id, -1, null);
+    }
+
+    /**
+     * @param deviceId JInputHook id of device, see
+     * {@link DispatchContext#getDeviceId()}.
+     * @return selector of device with JInputHook id.
+     */
+    public static DeviceSelector deviceId(int deviceId) {
+        if (deviceId < 0) {
+            throw new IllegalArgumentException("Device id cannot be negative.");
+        }
+        return new DeviceSelector(DEVICE_ID, null, deviceId, null);
+    }
+
+    /**
+     * @param regex regex found on device names.
+     * @return selector of devices by name.
+     */
+    public static DeviceSelector name(String regex) {
+        if (regex == null) {
+            throw new IllegalArgumentException("Device name regex cannot be null.");
+        }
+        return new DeviceSelector(NAME, null, -1, Pattern.compile(regex));
+    }
+
+    /**
+     * @return selector of scanner like devices, in burst mode by
+     * {@link BurstOptions#setDevicePattern(java.lang.String)} (all devices
+     * without pattern).
+     */
+    public static DeviceSelector burstDevices() {
+        return BURST_DEVICES;
+    }
+
+    boolean matches(int deviceId, KeyboardDevice device, boolean burst) {
+        switch (kind) {
+            case ID:
+                return id.equals(device.getId());
+            case DEVICE_ID:
+                return this.deviceId == deviceId;
+            case NAME:
+                String name = device.getName();
+                return name != null && namePattern.matcher(name).find();
+            default:
+                return burst;
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case ID:
+                return "DeviceSelector{id=" + id + '}';
+            case DEVICE_ID:
+                return "DeviceSelector{deviceId=" + deviceId + '}';
+            case NAME:
+                return "DeviceSelector{name=" + namePattern + '}';
+            default:
+                return "DeviceSelector{burstDevices}";
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watch a devices directory (like <code>/dev/input</code>) and run an action
+ * only when a device node appears, disappears or changes permissions.<br>
+ * Uses {@link WatchService} and falls back to listing the directory
+ * periodically if it is not available.
+ *
+ * @author dyorgio
+ */
+final class DeviceWatcher extends Thread {
+
+    private static final Logger LOGGER = Logger.getLogger(DeviceWatcher.class.getName());
+
+    // udev adjusts permissions some millis after node creation
+    private static final long SETTLE_MILLIS = 250;
+
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final long pollingMillis;
+    private final Runnable onChange;
+
+    /**
+     * @param directory devices directory.
+     * @param glob device node file name pattern, like <code>event*</code>.
+     * @param pollingMillis directory listing interval used when WatchService
+     * is not available.
+     * @param onChange action to run on changes.
+     */
+    DeviceWatcher(Path directory, String glob, long pollingMillis, Runnable onChange) {
+        super(null, null, "UpdateKeyboardsThread", 64l * 1024l);
+        setDaemon(true);
+        this.directory = directory;
+        this.matcher = directory.getFileSystem().getPathMatcher("glob:" + glob);
+        this.pollingMillis = pollingMillis;
+        this.onChange = onChange;
+    }
+
+    @Override
+    public void run() {
+        try {
+            try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+                directory.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                watch(watchService);
+                return;
+            } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException ex) {
+                LOGGER.log(Level.FINE, "WatchService not available for " + directory + ", using polling", ex);
+            }
+            poll();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watch(WatchService watchService) throws InterruptedException {
+        while (!isInterrupted()) {
+            WatchKey key = watchService.take();
+            boolean changed = drain(key);
+            // group bursts of events (ex: node creation + chmod) in one change
+            while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                changed |= drain(key);
+            }
+            if (changed) {
+                onChange.run();
+            }
+        }
+    }
+
+    private boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            } else if (matcher.matches((Path) event.context())) {
+                changed = true;
+            }
+        }
+        if (!key.reset()) {
+            throw new ClosedWatchServiceException();
+        }
+        return changed;
+    }
+
+    private void poll() throws InterruptedException {
+        Map<Path, Boolean> previous = list();
+        while (!isInterrupted()) {
+            sleep(pollingMillis);
+            Map<Path, Boolean> current = list();
+            if (!current.equals(previous)) {
+                previous = current;
+                onChange.run();
+            }
+        }
+    }
+
+    private Map<Path, Boolean> list() {
+        Map<Path, Boolean> nodes = new HashMap();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (matcher.matches(path.getFileName())) {
+                    nodes.put(path.getFileName(), Files.isReadable(path));
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Cannot list " + directory, ex);
+        }
+        return nodes;
+    }
+}
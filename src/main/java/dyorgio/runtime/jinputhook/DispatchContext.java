@@ -0,0 +1,129 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * Timing of event being delivered to current thread listener.<br>
+ * Only valid inside a {@link GlobalKeyListener}, {@link ShortcutListener} or
+ * {@link BurstListener} callback, instance is reused by next callback of same thread.
+ *
+ * <pre>
+ * public void keyPressed(Key key) {
+ *     long latency = DispatchContext.current().getDispatchLatencyNanos();
+ * }
+ * </pre>
+ *
+ * @author dyorgio
+ */
+public final class DispatchContext {
+
+    private static final ThreadLocal<DispatchContext> CONTEXT = new ThreadLocal<DispatchContext>() {
+        @Override
+        protected DispatchContext initialValue() {
+            return new DispatchContext();
+        }
+    };
+
+    private boolean active;
+    private int deviceId;
+    private long captureNanos;
+    private long sourceNanos;
+    private long handlerStartNanos;
+    private ShortcutSequence shortcutSequence;
+
+    private DispatchContext() {
+    }
+
+    /**
+     * @return context of event being delivered or <code>null</code> outside
+     * listener callbacks.
+     */
+    public static DispatchContext current() {
+        DispatchContext context = CONTEXT.get();
+        return context.active ? context : null;
+    }
+
+    static DispatchContext enter(DispatchEvent event, long handlerStartNanos) {
+        DispatchContext context = CONTEXT.get();
+        context.active = true;
+        context.deviceId = event.device;
+        context.captureNanos = event.captureNanos;
+        context.sourceNanos = event.sourceNanos;
+        context.handlerStartNanos = handlerStartNanos;
+        context.shortcutSequence = event.sequence == null ? null : event.sequence.sequence;
+        return context;
+    }
+
+    void exit() {
+        active = false;
+        shortcutSequence = null;
+    }
+
+    /**
+     * @return id of keyboard that generated event.
+     */
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Monotonic timestamp, comparable across keyboards.
+     *
+     * @return {@link System#nanoTime()} when event was read from keyboard.
+     */
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    /**
+     * Timestamp of event source (kernel time on Linux evdev source, JInput
+     * event time on Windows/Mac), its clock depends on source.
+     *
+     * @return source timestamp in nanoseconds, 0 if source doesn't provide
+     * it.
+     */
+    public long getSourceNanos() {
+        return sourceNanos;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when listener callback started.
+     */
+    public long getHandlerStartNanos() {
+        return handlerStartNanos;
+    }
+
+    /**
+     * @return time between event read and listener callback start.
+     */
+    public long getDispatchLatencyNanos() {
+        return handlerStartNanos - captureNanos;
+    }
+
+    /**
+     * @return sequence triggered when {@link ShortcutListener} was registered
+     * for a {@link ShortcutSequence} (shortcut argument is its last step),
+     * <code>null</code> otherwise.
+     */
+    public ShortcutSequence getShortcutSequence() {
+        return shortcutSequence;
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchContext{" + "deviceId=" + deviceId + ", captureNanos=" + captureNanos + ", sourceNanos=" + sourceNanos + ", latency=" + getDispatchLatencyNanos() + '}';
+    }
+}
@@ -0,0 +1,90 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Mutable event waiting to be delivered to listeners, reused by dispatchers.
+ *
+ * @author dyorgio
+ */
+final class DispatchEvent {
+
+    static final int KEY_PRESSED = 0;
+    static final int KEY_RELEASED = 1;
+    static final int SHORTCUT = 2;
+    static final int SEQUENCE = 3;
+    static final int BURST = 4;
+
+    /**
+     * Polled device, resolves its listeners.
+     */
+    KeyboardState keyboard;
+    int device;
+    int type;
+    Key key;
+    /**
+     * Registered shortcut of dispatcher events.
+     */
+    ShortcutIndex.Entry entry;
+    /**
+     * Registered sequence of {@link #SEQUENCE} events.
+     */
+    SequenceIndex.Entry sequence;
+    /**
+     * Shortcut or last step of sequence.
+     */
+    Shortcut shortcut;
+    /**
+     * Completed burst of {@link #BURST} events.
+     */
+    Burst burst;
+    /**
+     * {@link System#nanoTime()} when event was read by polling thread.
+     */
+    long captureNanos;
+    /**
+     * Source timestamp, 0 if source doesn't provide it.
+     */
+    long sourceNanos;
+
+    void set(KeyboardState keyboard, int type, Key key, ShortcutIndex.Entry entry, SequenceIndex.Entry sequence, Shortcut shortcut, Burst burst, long captureNanos, long sourceNanos) {
+        this.keyboard = keyboard;
+        this.device = keyboard.id;
+        this.type = type;
+        this.key = key;
+        this.entry = entry;
+        this.sequence = sequence;
+        this.shortcut = shortcut;
+        this.burst = burst;
+        this.captureNanos = captureNanos;
+        this.sourceNanos = sourceNanos;
+    }
+
+    void set(DispatchEvent other) {
+        set(other.keyboard, other.type, other.key, other.entry, other.sequence, other.shortcut, other.burst, other.captureNanos, other.sourceNanos);
+    }
+
+    void clear() {
+        keyboard = null;
+        key = null;
+        entry = null;
+        sequence = null;
+        shortcut = null;
+        burst = null;
+    }
+}
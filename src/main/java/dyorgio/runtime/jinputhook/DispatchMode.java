@@ -0,0 +1,44 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * How key and shortcut events are delivered to listeners.
+ *
+ * @author dyorgio
+ */
+public enum DispatchMode {
+
+    /**
+     * Each event is a new task of a thread pool that grows on demand
+     * (listeners may receive events out of order).
+     */
+    EXECUTOR,
+    /**
+     * Events are copied to preallocated ring buffers drained by a fixed number
+     * of threads, events of the same device are delivered in order. A ring
+     * that stays full (blocked listener) drops new events instead of stopping
+     * polling, key presses and releases in pairs (see
+     * {@link JInputHookMetrics#getDispatchDroppedEvents()}).
+     */
+    RING_BUFFER,
+    /**
+     * Each listener callback runs on its own virtual thread, listeners that
+     * block (HTTP, database) don't hold platform threads.<br>
+     * Requires Java 21+, on older JVMs falls back to {@link #EXECUTOR}.
+     */
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,111 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves events from polling thread to listeners threads.
+ *
+ * @author dyorgio
+ * @see DispatchMode
+ */
+abstract class EventDispatcher {
+
+    /**
+     * Delivers one event to listeners.
+     */
+    static interface Handler {
+
+        /**
+         * @return current listeners of event, only dispatched ones must be
+         * invoked by dispatchers.
+         */
+        ListenerDelivery[] getListeners(DispatchEvent event);
+
+        /**
+         * Invokes all dispatched listeners of event in current thread.
+         */
+        void handle(DispatchEvent event);
+    }
+
+    static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+        AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "FireEventsThread-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    final Handler handler;
+
+    EventDispatcher(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Called from polling thread.
+     *
+     * @param event event to be copied, reused by caller after this call.
+     */
+    abstract void dispatch(DispatchEvent event);
+
+    /**
+     * @return events waiting or being delivered.
+     */
+    abstract int getQueueDepth();
+
+    /**
+     * @return threads currently delivering events.
+     */
+    abstract int getActiveThreads();
+
+    /**
+     * @return events dropped because listeners didn't keep up.
+     */
+    long getDroppedEvents() {
+        return 0;
+    }
+
+    /**
+     * Stops delivery, next dispatches are ignored (polling threads may still
+     * hold a closed context).
+     */
+    abstract void shutdown();
+
+    /**
+     * @param options dispatch options of context.
+     * @param pollingMode polling mode of initialization, events are published
+     * by one thread per device on {@link PollingMode#PER_DEVICE}.
+     * @param handler delivers events to listeners.
+     * @return new dispatcher.
+     */
+    static EventDispatcher create(JInputHookOptions options, PollingMode pollingMode, Handler handler) {
+        switch (options.getDispatchMode()) {
+            case VIRTUAL_THREADS:
+                return VirtualThreadEventDispatcher.create(handler);
+            case RING_BUFFER:
+                return new RingBufferEventDispatcher(handler, options.getDispatchThreads(), options.getRingBufferSize(),
+                        pollingMode == PollingMode.PER_DEVICE);
+            default:
+                return new ExecutorEventDispatcher(handler);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One subscriber of key, shortcut or device events.<br>
+ * Events are kept in a bounded buffer until requested, subscriber is always
+ * called serially on its executor (never on polling thread). Demand and
+ * buffer semantics follow Reactive Streams, adapted by
+ * <code>JInputHookFlow</code> on Java 9+.
+ *
+ * @author dyorgio
+ */
+final class EventStream implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(EventStream.class.getName());
+
+    static final EventStream[] EMPTY = new EventStream[0];
+
+    static final int KEYS = 0;
+    static final int SHORTCUT = 1;
+    static final int DEVICES = 2;
+
+    /**
+     * Receives stream signals, never concurrently.
+     */
+    interface Sink {
+
+        void onNext(HookEvent event);
+
+        void onError(Throwable error);
+
+        void onComplete();
+    }
+
+    final int kind;
+    final Shortcut shortcut;
+    private final Sink sink;
+    private final Executor executor;
+    private final OverflowStrategy overflowStrategy;
+    // context where stream is registered, set once by context
+    volatile JInputHookContext context;
+
+    // guarded by this
+    private final HookEvent[] buffer;
+    private long head;
+    private long tail;
+    private long demand;
+    private boolean cancelled;
+    private Throwable error;
+    private boolean completed;
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    EventStream(int kind, Shortcut shortcut, int bufferSize, OverflowStrategy overflowStrategy, Executor executor, Sink sink) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive.");
+        }
+        if (overflowStrategy == null || executor == null || sink == null) {
+            throw new IllegalArgumentException("Overflow strategy, executor and subscriber cannot be null.");
+        }
+        this.kind = kind;
+        this.shortcut = shortcut;
+        this.buffer = new HookEvent[bufferSize];
+        this.overflowStrategy = overflowStrategy;
+        this.executor = executor;
+        this.sink = sink;
+    }
+
+    /**
+     * Called from polling or devices update threads, never blocks.
+     */
+    void offer(HookEvent event) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            if (head - tail == buffer.length) {
+                dropped.incrementAndGet();
+                switch (overflowStrategy) {
+                    case DROP_LATEST:
+                        return;
+                    case DROP_OLDEST:
+                        buffer[(int) (tail++ % buffer.length)] = null;
+                        break;
+                    default:
+                        fail(new IllegalStateException("Subscriber buffer overflow, " + buffer.length + " events not requested."));
+                        return;
+                }
+            }
+            buffer[(int) (head++ % buffer.length)] = event;
+        }
+        drain();
+    }
+
+    void request(long n) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Requested events must be positive: " + n));
+            } else {
+                demand += n;
+                if (demand < 0) {
+                    // unbounded
+                    demand = Long.MAX_VALUE;
+                }
+            }
+        }
+        drain();
+    }
+
+    void cancel() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            clear();
+        }
+        unregister();
+    }
+
+    /**
+     * Ends stream when its context is closed, pending events are discarded.
+     *
+     * @param cause sent to subscriber by onError, <code>null</code> for
+     * onComplete.
+     */
+    void terminate(Throwable cause) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            clear();
+            if (cause == null) {
+                completed = true;
+            } else {
+                error = cause;
+            }
+        }
+        drain();
+    }
+
+    /**
+     * @return <code>true</code> if cancelled, failed or terminated.
+     */
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return events dropped by buffer overflow.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    // guarded by this
+    private void fail(Throwable error) {
+        this.error = error;
+        cancelled = true;
+        clear();
+        unregister();
+        drain();
+    }
+
+    private void unregister() {
+        JInputHookContext registered = context;
+        if (registered != null) {
+            registered.removeStream(this);
+        }
+    }
+
+    // guarded by this
+    private void clear() {
+        while (tail != head) {
+            buffer[(int) (tail++ % buffer.length)] = null;
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        int missed = 1;
+        do {
+            while (true) {
+                HookEvent event;
+                Throwable failure = null;
+                boolean complete = false;
+                synchronized (this) {
+                    if (error != null) {
+                        failure = error;
+                        error = null;
+                        event = null;
+                    } else if (completed) {
+                        complete = true;
+                        completed = false;
+                        event = null;
+                    } else if (cancelled || demand == 0 || head == tail) {
+                        break;
+                    } else {
+                        int slot = (int) (tail++ % buffer.length);
+                        event = buffer[slot];
+                        buffer[slot] = null;
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                    }
+                }
+                if (failure != null) {
+                    sink.onError(failure);
+                    break;
+                }
+                if (complete) {
+                    sink.onComplete();
+                    break;
+                }
+                try {
+                    sink.onNext(event);
+                } catch (Throwable t) {
+                    // subscriber violated the contract, stop sending events
+                    LOGGER.log(Level.WARNING, "Subscriber failed, cancelling stream", t);
+                    cancel();
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
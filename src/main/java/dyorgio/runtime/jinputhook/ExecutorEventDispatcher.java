@@ -0,0 +1,74 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each event is a new task of an unbounded thread pool.
+ *
+ * @author dyorgio
+ */
+final class ExecutorEventDispatcher extends EventDispatcher {
+
+    private final ThreadPoolExecutor fireEventsExecutor = new ThreadPoolExecutor(1, Integer.MAX_VALUE,
+            60L, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            THREAD_FACTORY);
+    private volatile boolean closed;
+
+    ExecutorEventDispatcher(Handler handler) {
+        super(handler);
+    }
+
+    @Override
+    void dispatch(DispatchEvent pollEvent) {
+        if (closed) {
+            return;
+        }
+        final DispatchEvent event = new DispatchEvent();
+        event.set(pollEvent);
+        try {
+            fireEventsExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    handler.handle(event);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // shutdown after closed check
+        }
+    }
+
+    @Override
+    int getQueueDepth() {
+        return fireEventsExecutor.getActiveCount();
+    }
+
+    @Override
+    int getActiveThreads() {
+        return fireEventsExecutor.getActiveCount();
+    }
+
+    @Override
+    void shutdown() {
+        closed = true;
+        fireEventsExecutor.shutdown();
+    }
+}
@@ -0,0 +1,34 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * Receives all key transitions read in one poll cycle at once, useful to
+ * persist or forward events with one I/O operation per batch.
+ *
+ * @author dyorgio
+ */
+public interface GlobalKeyBatchListener {
+
+    /**
+     * Called from batch thread, while it runs new transitions are accumulated
+     * in next batch.
+     *
+     * @param batch transitions in read order, reused after this call returns,
+     * never keep a reference to it.
+     */
+    void keysChanged(KeyBatch batch);
+}
@@ -0,0 +1,90 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Immutable key, shortcut or device event delivered by event streams (see
+ * <code>JInputHookFlow</code> on Java 9+).
+ *
+ * @author dyorgio
+ */
+public final class HookEvent {
+
+    public static enum Type {
+        KEY_PRESSED,
+        KEY_RELEASED,
+        SHORTCUT,
+        DEVICE_ADDED,
+        DEVICE_REMOVED
+    }
+
+    private final Type type;
+    private final Key key;
+    private final Shortcut shortcut;
+    private final int deviceId;
+    private final String deviceName;
+    private final long captureNanos;
+
+    HookEvent(Type type, Key key, Shortcut shortcut, int deviceId, String deviceName, long captureNanos) {
+        this.type = type;
+        this.key = key;
+        this.shortcut = shortcut;
+        this.deviceId = deviceId;
+        this.deviceName = deviceName;
+        this.captureNanos = captureNanos;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return key of key events, <code>null</code> otherwise.
+     */
+    public Key getKey() {
+        return key;
+    }
+
+    /**
+     * @return shortcut of shortcut events, <code>null</code> otherwise.
+     */
+    public Shortcut getShortcut() {
+        return shortcut;
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when event was read or device was
+     * added/removed.
+     */
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "HookEvent{" + "type=" + type + ", key=" + key + ", shortcut=" + shortcut + ", deviceId=" + deviceId + ", deviceName=" + deviceName + '}';
+    }
+}
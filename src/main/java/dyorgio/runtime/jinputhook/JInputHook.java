@@ -15,39 +15,32 @@
  ***************************************************************************** */
 package dyorgio.runtime.jinputhook;
 
-import dyorgio.runtime.jinputhook.cleaner.JInputCleaner;
-import java.io.File;
-import java.io.FileOutputStream;
+import dyorgio.runtime.jinputhook.source.EventJournalWriter;
+import dyorgio.runtime.jinputhook.source.JInputKeyboardEventSource;
+import dyorgio.runtime.jinputhook.source.KeyboardDevice;
+import dyorgio.runtime.jinputhook.source.KeyboardEvent;
+import dyorgio.runtime.jinputhook.source.KeyboardEventSource;
 import java.io.IOException;
-import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import static java.lang.Thread.sleep;
-import java.lang.reflect.Constructor;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import net.java.games.input.Component.Identifier.Key;
-import net.java.games.input.Controller;
-import net.java.games.input.ControllerEnvironment;
-import net.java.games.input.Event;
-import net.java.games.input.EventQueue;
-import net.java.games.input.Keyboard;
-import static dyorgio.runtime.jinputhook.Shortcut.fromKeys;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.Map.Entry;
-import net.java.games.input.Component;
 
 /**
  *
@@ -57,33 +50,70 @@ public final class JInputHook {
 
     private static final Logger LOGGER = Logger.getLogger(JInputHook.class.getName());
 
-    private static JInputHook INSTANCE;
+    private static final long POLLER_RESUME_TIMEOUT = 1000;
+    private static final long POLLER_STOP_TIMEOUT = 1000;
 
-    private final Set<GlobalKeyListener> globalKeyboardListeners = new HashSet();
+    static final String MXBEAN_NAME = "dyorgio.runtime.jinputhook:type=JInputHook";
 
-    private final Map<Shortcut, Set<ShortcutListener>> shortcutListeners = new HashMap();
+    private static JInputHook INSTANCE;
 
-    private final ExecutorService fireEventsExecutor = new ThreadPoolExecutor(1, Integer.MAX_VALUE,
-            60L, TimeUnit.SECONDS,
-            new SynchronousQueue<Runnable>(),
-            new ThreadFactory() {
-        AtomicInteger count = new AtomicInteger(0);
+    // listeners of static methods, created with initialization options
+    private final JInputHookContext defaultContext;
+    // guarded by this for writes, read by polling threads
+    private volatile JInputHookContext[] contexts;
 
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread thread = new Thread(r, "FireEventsThread-" + count.incrementAndGet());
-            thread.setDaemon(true);
-            return thread;
-        }
-    });
-    private final Thread updateKeyboardsThread;
+    // pollers park on it while nothing needs device events
+    private final Object demandLock = new Object();
+    // written holding demandLock, parked or resuming pollers
+    private volatile int parkedPollers;
+    private final Object journalLock = new Object();
+    private volatile EventJournalWriter journalWriter;
+    private final PollMetrics metrics;
+    private final PollingMode pollingMode;
+    private final PollingProfile pollingProfile;
+    private final PollingScheduler pollingScheduler;
+
+    private final KeyboardEventSource eventSource;
+    // devices updates run one at a time, requests during an update are coalesced
+    private final ReentrantLock devicesUpdateLock = new ReentrantLock();
+    private final AtomicBoolean devicesUpdateRequested = new AtomicBoolean();
+    private Thread updateKeyboardsThread;
     private Thread poolingKeyboardInputThread;
-    private KeyboardState[] keyboardStates;
+    // guarded by this, keyed by KeyboardDevice.getId()
+    private final Map<String, KeyboardState> statesByDeviceId = new HashMap();
+    private volatile KeyboardState[] keyboardStates;
+    private int nextDeviceId = 0;
     private boolean errorOnUpdateKeyboards = false;
 
-    private JInputHook() {
+    private JInputHook(KeyboardEventSource eventSource, JInputHookOptions options) {
+        this.eventSource = eventSource;
+        this.pollingMode = options.getPollingMode();
+        this.pollingProfile = options.getPollingProfile();
+        this.pollingScheduler = options.getPollingScheduler();
+        this.metrics = new PollMetrics(pollingMode == PollingMode.PER_DEVICE);
+        this.defaultContext = new JInputHookContext(this, options, true);
+        this.contexts = new JInputHookContext[]{defaultContext};
+    }
+
+    /**
+     * Discovers devices and starts their monitoring, listeners can be
+     * registered before it.
+     */
+    private void start() {
         updateInputDevices();
-        if (!errorOnUpdateKeyboards) {
+        if (errorOnUpdateKeyboards) {
+            throw new RuntimeException("JInputHook could not load input devices.");
+        }
+        Path devicesDirectory = eventSource.getDevicesDirectory();
+        if (devicesDirectory != null) {
+            // update devices only when device nodes change
+            updateKeyboardsThread = new DeviceWatcher(devicesDirectory, "event*", 2000, new Runnable() {
+                @Override
+                public void run() {
+                    updateInputDevices();
+                }
+            });
+        } else {
             updateKeyboardsThread = new Thread(null, null, "UpdateKeyboardsThread", 64l * 1024l) {
                 {
                     setDaemon(true);
@@ -104,159 +134,289 @@ public final class JInputHook {
                 }
 
             };
-        } else {
-            updateKeyboardsThread = null;
         }
+        updateKeyboardsThread.start();
     }
 
-    private void fireKeyPressed(final Key key) {
-        fireEventsExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                synchronized (globalKeyboardListeners) {
-                    for (GlobalKeyListener listener : globalKeyboardListeners) {
-                        listener.keyPressed(key);
+    private void fireDevice(KeyboardState keyboardState, HookEvent.Type type) {
+        for (JInputHookContext context : contexts) {
+            context.fireDevice(keyboardState, type);
+        }
+    }
+
+    /**
+     * Reads pending events of one device, always called by the same thread
+     * for a device.
+     *
+     * @param keyboardState device state.
+     * @param batch cycle events of batch listeners or <code>null</code>.
+     * @return events read or -1 if device failed to poll.
+     */
+    private int pollDevice(KeyboardState keyboardState, KeyBatch batch) {
+        int loopingCount = 0;
+        try {
+            KeyboardDevice device = keyboardState.device;
+            KeyboardEvent event = keyboardState.event;
+            EventJournalWriter journal = journalWriter;
+            JInputHookContext[] current = contexts;
+            if (!device.poll()) {
+                return -1;
+            }
+            if (device.getNextEvent(event)) {
+                do {
+                    loopingCount++;
+                    PollMetrics.increment(keyboardState.events);
+                    long captureNanos = System.nanoTime();
+                    Key key = event.getKey();
+                    int ordinal = KeyIndex.ordinal(key);
+                    if (batch != null) {
+                        batch.add(keyboardState.id, device.getName(), key, event.isPressed(), captureNanos, event.getNanos());
+                    }
+                    if (journal != null) {
+                        journal.write(keyboardState.id, device.getName(), key, event.isPressed(), captureNanos, event.getNanos());
+                    }
+                    if (event.isPressed()) {
+                        for (JInputHookContext context : current) {
+                            context.keyPressed(keyboardState, key, ordinal, captureNanos, event.getNanos());
+                        }
+                        if (ordinal != -1) {
+                            keyboardState.press(ordinal);
+                        }
+                        for (JInputHookContext context : current) {
+                            context.keysPressed(keyboardState, ordinal, captureNanos, event.getNanos());
+                        }
+                    } else {
+                        if (ordinal != -1) {
+                            keyboardState.release(ordinal);
+                        }
+                        for (JInputHookContext context : current) {
+                            context.keyReleased(keyboardState, key, captureNanos, event.getNanos());
+                        }
                     }
+                } while (loopingCount < 1000 && device.getNextEvent(event));
+            }
+            for (JInputHookContext context : current) {
+                context.pollEnded(keyboardState);
+            }
+        } catch (Exception e) {
+            LOGGER.throwing(getClass().getName(), "pollDevice", e);
+        }
+        return loopingCount;
+    }
+
+    /**
+     * @return <code>true</code> if some context or journal needs
+     * device events, pollers park without it.
+     */
+    private boolean hasDemand() {
+        if (journalWriter != null) {
+            return true;
+        }
+        for (JInputHookContext context : contexts) {
+            if (context.hasDemand()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBatchActive() {
+        for (JInputHookContext context : contexts) {
+            if (context.batchDispatcher.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands cycle events to batch listeners of each context.
+     *
+     * @param cycle events of poll cycle, cleared by this method.
+     */
+    private void publishBatch(KeyBatch cycle) {
+        for (JInputHookContext context : contexts) {
+            if (context.batchDispatcher.isActive()) {
+                context.batchDispatcher.publish(cycle);
+            }
+        }
+        cycle.clear();
+    }
+
+    /**
+     * Wakes parked pollers, called after each registration (outside of
+     * listeners locks). Only a registration that ends parking waits pollers
+     * to discard events read while parked (all pollers together, at most
+     * {@value #POLLER_RESUME_TIMEOUT}ms), so events after registration aren't
+     * discarded. Other registrations return immediately.
+     */
+    void signalDemand() {
+        if (parkedPollers == 0) {
+            // a poller about to park sees new demand holding demandLock
+            return;
+        }
+        synchronized (demandLock) {
+            demandLock.notifyAll();
+            long deadline = System.nanoTime() + POLLER_RESUME_TIMEOUT * 1000000L;
+            long remaining;
+            try {
+                while (parkedPollers > 0 && hasDemand() && (remaining = deadline - System.nanoTime()) > 0) {
+                    demandLock.wait(Math.max(1, remaining / 1000000L));
                 }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
             }
-        });
+        }
     }
 
-    private void fireKeyReleased(final Key key) {
-        fireEventsExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                synchronized (globalKeyboardListeners) {
-                    for (GlobalKeyListener listener : globalKeyboardListeners) {
-                        listener.keyReleased(key);
-                    }
+    /**
+     * Parks polling thread while there is no demand, a parked poller must
+     * call {@link #resumed()} after discarding pending events.
+     *
+     * @return <code>true</code> if thread was parked.
+     * @throws InterruptedException if poller was stopped while parked.
+     */
+    private boolean awaitDemand() throws InterruptedException {
+        if (hasDemand()) {
+            return false;
+        }
+        synchronized (demandLock) {
+            if (hasDemand()) {
+                return false;
+            }
+            parkedPollers++;
+            try {
+                while (!hasDemand()) {
+                    demandLock.wait();
                 }
+            } catch (InterruptedException ex) {
+                resumed();
+                throw ex;
             }
-        });
+        }
+        return true;
     }
 
-    private void fireShortcutPressed(final Shortcut shortcut) {
-        fireEventsExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                Set<ShortcutListener> listeners = shortcutListeners.get(shortcut);
-                if (listeners != null) {
-                    synchronized (listeners) {
-                        for (ShortcutListener listener : listeners) {
-                            listener.shortcutTriggered(shortcut);
+    private void resumed() {
+        synchronized (demandLock) {
+            parkedPollers--;
+            demandLock.notifyAll();
+        }
+    }
+
+    /**
+     * Consumes events read by device while its poller was parked, only
+     * pressed keys are updated (no late events to new subscribers).
+     */
+    private void discardPending(KeyboardState keyboardState) {
+        try {
+            KeyboardDevice device = keyboardState.device;
+            KeyboardEvent event = keyboardState.event;
+            if (device.poll()) {
+                for (int i = 0; i < 10000 && device.getNextEvent(event); i++) {
+                    int ordinal = KeyIndex.ordinal(event.getKey());
+                    if (ordinal != -1) {
+                        if (event.isPressed()) {
+                            keyboardState.press(ordinal);
+                        } else {
+                            keyboardState.release(ordinal);
                         }
                     }
                 }
             }
-        });
+        } catch (Exception e) {
+            LOGGER.throwing(getClass().getName(), "discardPending", e);
+        }
+        for (JInputHookContext context : contexts) {
+            context.resetDevice(keyboardState);
+        }
     }
 
+    /**
+     * Rescans devices, or requests a new rescan to thread doing one (like
+     * pollers of other removed devices), so callers never wait another
+     * update.
+     */
     private void updateInputDevices() {
-        synchronized (this) {
+        devicesUpdateRequested.set(true);
+        while (devicesUpdateRequested.get() && devicesUpdateLock.tryLock()) {
             try {
-                List<Keyboard> localKeyboards = new ArrayList();
-                for (Controller controller : getDefaultEnvironment().getControllers()) {
-                    if (controller.getType() == Controller.Type.KEYBOARD) {
-                        if (controller.getComponents() != null && controller.getComponents().length > 5) {
-                            localKeyboards.add((Keyboard) controller);
-                        }
-                    }
+                if (devicesUpdateRequested.getAndSet(false)) {
+                    rescanDevices();
                 }
+            } finally {
+                devicesUpdateLock.unlock();
+            }
+        }
+    }
 
-                List<KeyboardState> localKeyboardStates = new ArrayList();
-                for (Keyboard keyboard : localKeyboards) {
-                    KeyboardState currentState = null;
-                    if (keyboardStates != null) {
-                        for (KeyboardState state : keyboardStates) {
-                            if (state.keyboard.getName() == null ? keyboard.getName() == null : state.keyboard.getName().equals(keyboard.getName())) {
-                                if (OSDetector.isMac()) {
-                                    try {
-                                        Field queueField = state.keyboard.getClass().getDeclaredField("queue");
-                                        queueField.setAccessible(true);
-                                        Object queue = queueField.get(state.keyboard);
-                                        Class queueClass = queue.getClass();
-                                        Method queueReleaseMethod = queueClass.getDeclaredMethod("release");
-                                        queueReleaseMethod.setAccessible(true);
-                                        queueReleaseMethod.invoke(queue);
-                                    } catch (Exception ex) {
-                                        LOGGER.log(Level.SEVERE, null, ex);
-                                    }
-                                }
-                                currentState = new KeyboardState(keyboard);
-                                currentState.keysPressed.addAll(state.keysPressed);
-                                currentState.eventQueue.updateQueue(keyboard);
-                                break;
-                            }
+    /**
+     * Called holding devicesUpdateLock. Devices table is updated holding
+     * JInputHook monitor, stopped pollers are joined after releasing it.
+     */
+    private void rescanDevices() {
+        long start = System.nanoTime();
+        List<Thread> stoppedPollers = new ArrayList();
+        Map<KeyboardState, KeyboardDevice> replacedDevices = new LinkedHashMap();
+        synchronized (this) {
+            try {
+                List<KeyboardDevice> devices = eventSource.getDevices();
+                Map<String, KeyboardState> currentStates = new LinkedHashMap();
+                Map<String, KeyboardDevice> addedDevices = new HashMap();
+                BitSet usedSlots = new BitSet();
+                for (KeyboardDevice device : devices) {
+                    String deviceId = device.getId();
+                    if (currentStates.containsKey(deviceId)) {
+                        LOGGER.log(Level.WARNING, "Duplicated device id {0}", deviceId);
+                        deviceId = deviceId + "@" + System.identityHashCode(device);
+                    }
+                    KeyboardState state = statesByDeviceId.remove(deviceId);
+                    if (state == null) {
+                        // slot assigned after all kept devices are known
+                        addedDevices.put(deviceId, device);
+                    } else {
+                        usedSlots.set(state.slot);
+                        if (state.device != device) {
+                            // source created another instance, keep state and pressed keys,
+                            // device is replaced after its poller stops
+                            addStopped(stoppedPollers, state.stopPoller());
+                            replacedDevices.put(state, device);
                         }
                     }
-                    if (currentState == null) {
-                        currentState = new KeyboardState(keyboard);
+                    currentStates.put(deviceId, state);
+                }
+                for (Map.Entry<String, KeyboardState> entry : currentStates.entrySet()) {
+                    if (entry.getValue() == null) {
+                        // slots of removed devices are reused, contexts tables don't grow with replugs
+                        int slot = usedSlots.nextClearBit(0);
+                        usedSlots.set(slot);
+                        KeyboardState state = new KeyboardState(nextDeviceId++, slot, addedDevices.get(entry.getKey()));
+                        entry.setValue(state);
+                        fireDevice(state, HookEvent.Type.DEVICE_ADDED);
                     }
-                    localKeyboardStates.add(currentState);
+                }
+                // removed devices, already released by source
+                for (KeyboardState state : statesByDeviceId.values()) {
+                    addStopped(stoppedPollers, state.stopPoller());
+                    fireDevice(state, HookEvent.Type.DEVICE_REMOVED);
+                }
+                statesByDeviceId.clear();
+                statesByDeviceId.putAll(currentStates);
+                keyboardStates = currentStates.values().toArray(new KeyboardState[0]);
+                for (JInputHookContext context : contexts) {
+                    context.updateDevices(keyboardStates);
                 }
 
-                keyboardStates = localKeyboardStates.toArray(new KeyboardState[0]);
-
-                if (keyboardStates.length > 0) {
+                if (pollingMode == PollingMode.PER_DEVICE) {
+                    for (KeyboardState state : keyboardStates) {
+                        if (state.poller == null && !replacedDevices.containsKey(state)) {
+                            state.poller = new DevicePoller(state);
+                            state.poller.start();
+                        }
+                    }
+                } else if (keyboardStates.length > 0) {
                     if (poolingKeyboardInputThread == null) {
-                        poolingKeyboardInputThread = new Thread(null, null, "PoolingKeyboardThread", 16l * 1024l) {
-                            {
-                                setDaemon(true);
-                            }
-
-                            @Override
-                            @SuppressWarnings("SleepWhileInLoop")
-                            public void run() {
-                                final Event event = new Event();
-                                boolean updateDevices;
-                                int loopingCount;
-                                KeyboardEventQueue eventQueue;
-
-                                while (!isInterrupted()) {
-                                    synchronized (JInputHook.this) {
-                                        updateDevices = false;
-                                        for (KeyboardState keyboardState : keyboardStates) {
-                                            try {
-                                                if (keyboardState.keyboard.poll()) {
-                                                    eventQueue = keyboardState.eventQueue;
-                                                    if (eventQueue.getNextEvent(event)) {
-                                                        loopingCount = 0;
-                                                        do {
-                                                            loopingCount++;
-                                                            Key key = (Key) event.getComponent().getIdentifier();
-                                                            if (event.getValue() > 0) {
-                                                                fireKeyPressed(key);
-                                                                keyboardState.keysPressed.add(key);
-                                                                if (keyboardState.keysPressed.size() > 1 && !shortcutListeners.isEmpty()) {
-                                                                    fireShortcutPressed(fromKeys(keyboardState.keysPressed));
-                                                                }
-                                                            } else {
-                                                                keyboardState.keysPressed.remove(key);
-                                                                fireKeyReleased(key);
-                                                            }
-                                                        } while (loopingCount < 1000 && eventQueue.getNextEvent(event));
-                                                    }
-                                                } else {
-                                                    updateDevices = true;
-                                                }
-                                            } catch (Exception e) {
-                                                LOGGER.throwing(getClass().getName(), "run", e);
-                                            }
-                                        }
-                                        if (updateDevices) {
-                                            updateInputDevices();
-                                        }
-                                    }
-
-                                    try {
-                                        sleep(0, 1);
-                                    } catch (InterruptedException ex) {
-                                        Thread.currentThread().interrupt();
-                                        break;
-                                    }
-                                }
-                            }
-                        };
+                        poolingKeyboardInputThread = new SharedPoller();
                         poolingKeyboardInputThread.start();
                     }
                 } else {
@@ -273,269 +433,765 @@ public final class JInputHook {
                 errorOnUpdateKeyboards = true;
             }
         }
+        // a poller that found its device removed may be stopping itself
+        boolean interrupted = Thread.interrupted();
+        for (Thread poller : stoppedPollers) {
+            if (poller != Thread.currentThread()) {
+                try {
+                    poller.join(POLLER_STOP_TIMEOUT);
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+                if (poller.isAlive()) {
+                    LOGGER.log(Level.WARNING, "Poller {0} did not stop.", poller.getName());
+                }
+            }
+        }
+        if (!replacedDevices.isEmpty()) {
+            synchronized (this) {
+                for (Map.Entry<KeyboardState, KeyboardDevice> replaced : replacedDevices.entrySet()) {
+                    KeyboardState state = replaced.getKey();
+                    state.device.close();
+                    state.device = replaced.getValue();
+                    if (pollingMode == PollingMode.PER_DEVICE) {
+                        state.poller = new DevicePoller(state);
+                        state.poller.start();
+                    }
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        metrics.recordRescan(System.nanoTime() - start);
     }
 
-    private static ControllerEnvironment getDefaultEnvironment() {
-        try {
-            JInputCleaner.getInstance().cleanup();
-            Constructor<ControllerEnvironment> constructor = (Constructor<ControllerEnvironment>) Class.forName("net.java.games.input.DefaultControllerEnvironment").getDeclaredConstructors()[0];
-            constructor.setAccessible(true);
-            return constructor.newInstance();
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
+    private static void addStopped(List<Thread> stoppedPollers, Thread poller) {
+        if (poller != null) {
+            stoppedPollers.add(poller);
         }
     }
 
+    /**
+     * Initialize JInputHook using JInput natives to read keyboards.
+     *
+     * @throws Exception if natives or input devices cannot be loaded.
+     */
     public static synchronized void initialize() throws Exception {
+        initialize(new JInputHookOptions());
+    }
+
+    /**
+     * Initialize JInputHook using JInput natives to read keyboards.
+     *
+     * @param options initialization options.
+     * @throws Exception if natives or input devices cannot be loaded.
+     */
+    public static synchronized void initialize(JInputHookOptions options) throws Exception {
+        if (INSTANCE != null) {
+            throw new IllegalStateException("JInputHook already initialized.");
+        }
+        extractNatives(options);
+
+        initialize(new JInputKeyboardEventSource(), options);
+    }
+
+    /**
+     * Initialize JInputHook reading keyboards from a custom source.
+     *
+     * @param eventSource source of keyboard devices.
+     */
+    public static synchronized void initialize(KeyboardEventSource eventSource) {
+        initialize(eventSource, new JInputHookOptions());
+    }
+
+    /**
+     * Initialize JInputHook reading keyboards from a custom source.
+     *
+     * @param eventSource source of keyboard devices.
+     * @param options initialization options.
+     */
+    public static synchronized void initialize(KeyboardEventSource eventSource, JInputHookOptions options) {
+        INSTANCE = create(eventSource, options);
+        INSTANCE.start();
+
+        if (options.isJmxEnabled()) {
+            registerMXBean();
+        }
+    }
+
+    public static CompletableFuture<Void> initializeAsync() {
+        return initializeAsync(new JInputHookOptions());
+    }
+
+    /**
+     * Initialize JInputHook using JInput natives to read keyboards, without
+     * blocking the caller.<br>
+     * Listeners can be registered as soon as this method returns, natives
+     * extraction and devices discovery run on a background thread.
+     *
+     * @param options initialization options.
+     * @return future completed when devices are monitored, failed if natives
+     * or input devices cannot be loaded.
+     */
+    public static CompletableFuture<Void> initializeAsync(JInputHookOptions options) {
+        return initializeAsync(null, options);
+    }
+
+    /**
+     * Initialize JInputHook reading keyboards from a custom source, without
+     * blocking the caller (see {@link #initializeAsync(JInputHookOptions)}).
+     *
+     * @param eventSource source of keyboard devices, <code>null</code> for
+     * JInput natives.
+     * @param options initialization options.
+     * @return future completed when devices are monitored, cancelling it stops
+     * the initialization.
+     */
+    public static synchronized CompletableFuture<Void> initializeAsync(final KeyboardEventSource eventSource, final JInputHookOptions options) {
+        final JInputHook instance = create(eventSource == null ? new JInputKeyboardEventSource() : eventSource, options);
+        INSTANCE = instance;
+        final CompletableFuture<Void> future = new CompletableFuture();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (eventSource == null) {
+                        extractNatives(options);
+                    }
+                    if (!future.isCancelled()) {
+                        instance.start();
+                    }
+                } catch (Exception ex) {
+                    LOGGER.log(Level.SEVERE, "JInputHook async initialization failed", ex);
+                    // before future completion, caller can retry right after get()
+                    abort(instance, ex);
+                    future.completeExceptionally(ex);
+                    return;
+                }
+                if (future.isCancelled()) {
+                    abort(instance, new CancellationException("JInputHook initialization cancelled."));
+                    return;
+                }
+                if (options.isJmxEnabled()) {
+                    registerMXBean();
+                }
+                future.complete(null);
+            }
+        };
+        Thread thread = new Thread(null, task, "JInputHookInitThread", 64l * 1024l);
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    private static void abort(JInputHook instance, Throwable cause) {
+        synchronized (JInputHook.class) {
+            if (INSTANCE == instance) {
+                INSTANCE = null;
+            }
+        }
+        for (JInputHookContext context : instance.contexts) {
+            context.shutdown(cause);
+        }
+    }
+
+    /**
+     * @return validated instance, without devices.
+     */
+    private static JInputHook create(KeyboardEventSource eventSource, JInputHookOptions options) {
         if (INSTANCE != null) {
             throw new IllegalStateException("JInputHook already initialized.");
         }
-        // extract plataform natives
+        if (eventSource == null) {
+            throw new IllegalArgumentException("Event source cannot be null.");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null.");
+        }
+        if (options.getPollingMode() == PollingMode.PER_DEVICE && options.hasCustomPollingScheduler()) {
+            throw new IllegalArgumentException("Custom polling scheduler cannot be used with PER_DEVICE polling mode, use a polling profile.");
+        }
+        return new JInputHook(eventSource, options);
+    }
+
+    /**
+     * Extracts plataform natives.
+     */
+    private static void extractNatives(JInputHookOptions options) throws IOException {
         boolean extractOk = false;
         OSDetector.detect();
         if (OSDetector.isMac()) {
-            extractOk = extractMacNatives();
+            extractOk = extractMacNatives(options.getNativeCacheDirectory());
         } else if (OSDetector.isWindows()) {
-            extractOk = extractWindowsNatives();
+            extractOk = extractWindowsNatives(options.getNativeCacheDirectory());
         } else if (OSDetector.isLinux()) {
-            extractOk = extractLinuxNatives();
+            extractOk = extractLinuxNatives(options.getNativeCacheDirectory());
         }
 
         if (!extractOk) {
             throw new IOException("JInputHook could not extract jinput natives.");
         }
+    }
 
-        INSTANCE = new JInputHook();
-
-        if (INSTANCE.errorOnUpdateKeyboards) {
-            throw new RuntimeException("JInputHook could not load input devices.");
-        }
-
-        INSTANCE.updateKeyboardsThread.start();
+    /**
+     * Creates a context with its own listeners, dispatcher and metrics, fed
+     * by devices of this initialization (see {@link JInputHookContext}).
+     *
+     * @return new context, closed by its owner.
+     */
+    public static JInputHookContext createContext() {
+        return createContext(new JInputHookOptions());
     }
 
-    public static boolean addListener(GlobalKeyListener listener) {
+    /**
+     * Creates a context with its own listeners, dispatcher and metrics, fed
+     * by devices of this initialization (see {@link JInputHookContext}).
+     *
+     * @param options dispatch and burst options of context, polling and
+     * natives options are those of initialization.
+     * @return new context, closed by its owner.
+     */
+    public static JInputHookContext createContext(JInputHookOptions options) {
         if (INSTANCE == null) {
             throw new IllegalStateException("JInputHook not initialized.");
         }
-        synchronized (INSTANCE.globalKeyboardListeners) {
-            return INSTANCE.globalKeyboardListeners.add(listener);
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null.");
         }
+        return INSTANCE.addContext(options);
     }
 
-    public static boolean removeListener(GlobalKeyListener listener) {
-        if (INSTANCE == null) {
-            throw new IllegalStateException("JInputHook not initialized.");
+    private JInputHookContext addContext(JInputHookOptions options) {
+        JInputHookContext context = new JInputHookContext(this, options, false);
+        synchronized (this) {
+            if (keyboardStates != null) {
+                context.updateDevices(keyboardStates);
+            }
+            contexts = Snapshots.add(contexts, context);
         }
-        synchronized (INSTANCE.globalKeyboardListeners) {
-            return INSTANCE.globalKeyboardListeners.remove(listener);
+        return context;
+    }
+
+    /**
+     * Called by {@link JInputHookContext#close()}.
+     */
+    void removeContext(JInputHookContext context) {
+        synchronized (this) {
+            contexts = Snapshots.remove(contexts, context);
         }
     }
 
-    public static boolean addShortcutListener(Shortcut shortcut, ShortcutListener listener) {
-        if (INSTANCE == null) {
+    /**
+     * @return initialized instance.
+     */
+    static JInputHook instance() {
+        JInputHook instance = INSTANCE;
+        if (instance == null) {
             throw new IllegalStateException("JInputHook not initialized.");
         }
-        synchronized (INSTANCE.shortcutListeners) {
-            Set<ShortcutListener> listeners = INSTANCE.shortcutListeners.get(shortcut);
-            if (listeners == null) {
-                listeners = new HashSet();
-                INSTANCE.shortcutListeners.put(shortcut, listeners);
-            }
-            synchronized (listeners) {
-                return listeners.add(listener);
+        return instance;
+    }
+
+    /**
+     * @return default context, used by static methods and JMX.
+     */
+    static JInputHookContext context() {
+        return instance().defaultContext;
+    }
+
+    PollMetrics getPollMetrics() {
+        return metrics;
+    }
+
+    PollingMode getPollingMode() {
+        return pollingMode;
+    }
+
+    /**
+     * Reads current devices counters, without JInputHook monitor.
+     */
+    void collectDeviceMetrics(Map<String, Long> deviceEvents, Map<String, Long> deviceEventsPerSecond) {
+        KeyboardState[] states = keyboardStates;
+        if (states != null) {
+            for (KeyboardState state : states) {
+                deviceEvents.put(state.metricsName(), state.events.get());
+                deviceEventsPerSecond.put(state.metricsName(), state.eventsPerSecond);
             }
         }
     }
 
+    /**
+     * @return events waiting to be delivered to listeners (on
+     * {@link DispatchMode#EXECUTOR} mode, events being delivered).
+     */
+    public static int getDispatchQueueDepth() {
+        return context().getDispatchQueueDepth();
+    }
+
+    public static boolean addListener(GlobalKeyListener listener) {
+        return addListener(listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a global key listener.
+     *
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered.
+     */
+    public static boolean addListener(GlobalKeyListener listener, DeliveryPolicy policy) {
+        return addListener(null, listener, policy);
+    }
+
+    public static boolean addListener(DeviceSelector selector, GlobalKeyListener listener) {
+        return addListener(selector, listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a key listener of some devices, only events of selected
+     * devices are dispatched to it.
+     *
+     * @param selector devices of listener, <code>null</code> for all.
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered.
+     */
+    public static boolean addListener(DeviceSelector selector, GlobalKeyListener listener, DeliveryPolicy policy) {
+        return context().addListener(selector, listener, policy);
+    }
+
+    public static boolean removeListener(GlobalKeyListener listener) {
+        return context().removeListener(listener);
+    }
+
+    /**
+     * Register a listener that receives all key transitions of one poll cycle
+     * at once, on its own thread.
+     *
+     * @param listener listener.
+     * @return <code>false</code> if listener was already registered.
+     */
+    public static boolean addBatchListener(GlobalKeyBatchListener listener) {
+        return context().addBatchListener(listener);
+    }
+
+    public static boolean removeBatchListener(GlobalKeyBatchListener listener) {
+        return context().removeBatchListener(listener);
+    }
+
+    public static boolean addBurstListener(BurstListener listener) {
+        return addBurstListener(listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a listener of texts typed in bursts by devices of
+     * {@link JInputHookOptions#getBurstOptions()}, like barcode scanners.
+     *
+     * @param listener listener.
+     * @param policy how bursts are delivered to this listener.
+     * @return <code>false</code> if listener was already registered.
+     */
+    public static boolean addBurstListener(BurstListener listener, DeliveryPolicy policy) {
+        return context().addBurstListener(listener, policy);
+    }
+
+    public static boolean removeBurstListener(BurstListener listener) {
+        return context().removeBurstListener(listener);
+    }
+
+    public static boolean addShortcutListener(Shortcut shortcut, ShortcutListener listener) {
+        return addShortcutListener(shortcut, listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a shortcut listener.
+     *
+     * @param shortcut shortcut.
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered for this
+     * shortcut.
+     */
+    public static boolean addShortcutListener(Shortcut shortcut, ShortcutListener listener, DeliveryPolicy policy) {
+        return addShortcutListener(null, shortcut, listener, policy);
+    }
+
+    public static boolean addShortcutListener(DeviceSelector selector, Shortcut shortcut, ShortcutListener listener) {
+        return addShortcutListener(selector, shortcut, listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a shortcut listener of some devices, only shortcuts pressed on
+     * selected devices are dispatched to it.
+     *
+     * @param selector devices of listener, <code>null</code> for all.
+     * @param shortcut shortcut.
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered for this
+     * shortcut.
+     */
+    public static boolean addShortcutListener(DeviceSelector selector, Shortcut shortcut, ShortcutListener listener, DeliveryPolicy policy) {
+        return context().addShortcutListener(selector, shortcut, listener, policy);
+    }
+
     public static boolean removeShortcutListener(Shortcut shortcut) {
-        if (INSTANCE == null) {
-            throw new IllegalStateException("JInputHook not initialized.");
-        }
-        synchronized (INSTANCE.shortcutListeners) {
-            return INSTANCE.shortcutListeners.remove(shortcut) != null;
-        }
+        return context().removeShortcutListener(shortcut);
     }
 
     public static boolean removeShortcutListener(Shortcut shortcut, ShortcutListener listener) {
+        return context().removeShortcutListener(shortcut, listener);
+    }
+
+    public static boolean removeShortcutListener(ShortcutListener listener) {
+        return context().removeShortcutListener(listener);
+    }
+
+    public static boolean addShortcutListener(ShortcutSequence sequence, ShortcutListener listener) {
+        return addShortcutListener(sequence, listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a shortcut sequence listener, it receives last step of
+     * sequence, and sequence from {@link DispatchContext#getShortcutSequence()}.
+     *
+     * @param sequence shortcut sequence.
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered for this
+     * sequence.
+     */
+    public static boolean addShortcutListener(ShortcutSequence sequence, ShortcutListener listener, DeliveryPolicy policy) {
+        return context().addShortcutListener(sequence, listener, policy);
+    }
+
+    public static boolean removeShortcutListener(ShortcutSequence sequence) {
+        return context().removeShortcutListener(sequence);
+    }
+
+    public static boolean removeShortcutListener(ShortcutSequence sequence, ShortcutListener listener) {
+        return context().removeShortcutListener(sequence, listener);
+    }
+
+    /**
+     * Start recording all key transitions read by polling threads to a
+     * journal, replayable by
+     * {@link dyorgio.runtime.jinputhook.source.JournalKeyboardEventSource}.
+     *
+     * @param journal journal file, replaced if exists.
+     * @return journal writer, with records count.
+     * @throws IOException if journal cannot be created.
+     */
+    public static EventJournalWriter startRecording(Path journal) throws IOException {
         if (INSTANCE == null) {
             throw new IllegalStateException("JInputHook not initialized.");
         }
-        synchronized (INSTANCE.shortcutListeners) {
-            Set<ShortcutListener> listeners = INSTANCE.shortcutListeners.get(shortcut);
-            if (listeners != null) {
-                boolean result = listeners.remove(listener);
-                if (result && listeners.isEmpty()) {
-                    INSTANCE.shortcutListeners.remove(shortcut);
-                }
-                return result;
+        if (journal == null) {
+            throw new IllegalArgumentException("Journal cannot be null.");
+        }
+        EventJournalWriter writer;
+        synchronized (INSTANCE.journalLock) {
+            if (INSTANCE.journalWriter != null) {
+                throw new IllegalStateException("JInputHook already recording.");
             }
-            return false;
+            writer = new EventJournalWriter(journal);
+            INSTANCE.journalWriter = writer;
         }
+        INSTANCE.signalDemand();
+        return writer;
     }
 
-    public static boolean removeShortcutListener(ShortcutListener listener) {
+    /**
+     * Stop recording and close journal.
+     *
+     * @return <code>false</code> if it wasn't recording.
+     */
+    public static boolean stopRecording() {
         if (INSTANCE == null) {
             throw new IllegalStateException("JInputHook not initialized.");
         }
-        synchronized (INSTANCE.shortcutListeners) {
-            boolean removed = false;
-            Set<Shortcut> toRemove = new HashSet();
-            for (Entry<Shortcut, Set<ShortcutListener>> entry : INSTANCE.shortcutListeners.entrySet()) {
-                if (entry.getValue().remove(listener)) {
-                    removed = true;
-                    if (entry.getValue().isEmpty()) {
-                        toRemove.add(entry.getKey());
-                    }
-                }
-            }
-            for (Shortcut shortcut : toRemove) {
-                INSTANCE.shortcutListeners.remove(shortcut);
-            }
-
-            return removed;
+        EventJournalWriter writer;
+        synchronized (INSTANCE.journalLock) {
+            writer = INSTANCE.journalWriter;
+            INSTANCE.journalWriter = null;
         }
+        if (writer == null) {
+            return false;
+        }
+        // waits current writes of polling threads
+        writer.close();
+        return true;
     }
 
-    private static boolean extractMacNatives() {
-        return extractNative("/libjinput-osx.jnilib", System.mapLibraryName("jinput-osx"));
+    /**
+     * Register a stream of events, used by reactive adapters.
+     *
+     * @param stream stream of {@link EventStream#KEYS},
+     * {@link EventStream#SHORTCUT} or {@link EventStream#DEVICES}.
+     */
+    static void addStream(EventStream stream) {
+        context().addStream(stream);
     }
 
-    private static boolean extractWindowsNatives() {
-        if (OSDetector.isOSx86()) {
-            if (extractNative("/jinput-dx8.dll")) {
-                return extractNative("/jinput-raw.dll");
+    /**
+     * @return snapshot of poll loop, devices, dispatcher and listeners metrics.
+     */
+    public static JInputHookMetrics getMetrics() {
+        return context().getMetrics();
+    }
+
+    /**
+     * @return snapshot of shared poll loop and devices metrics, with metrics
+     * of a context.
+     */
+    JInputHookMetrics createMetrics(int dispatchQueueDepth, int dispatchActiveThreads, long dispatchDroppedEvents, long batchDroppedEvents,
+            Map<String, Long> listenerDelivered, Map<String, Long> listenerCallbackNanos, Map<String, Long> listenerMaxCallbackNanos) {
+        Map<String, Long> deviceEvents = new LinkedHashMap();
+        Map<String, Long> deviceEventsPerSecond = new LinkedHashMap();
+        collectDeviceMetrics(deviceEvents, deviceEventsPerSecond);
+        return new JInputHookMetrics(metrics, deviceEvents, deviceEventsPerSecond,
+                dispatchQueueDepth, dispatchActiveThreads, dispatchDroppedEvents, batchDroppedEvents,
+                listenerDelivered, listenerCallbackNanos, listenerMaxCallbackNanos);
+    }
+
+    private static void registerMXBean() {
+        try {
+            ObjectName name = new ObjectName(MXBEAN_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new StandardMBean(new LiveMetrics(), JInputHookMXBean.class, true), name);
             }
-        } else if (extractNative("/jinput-dx8_64.dll")) {
-            return extractNative("/jinput-raw_64.dll");
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Cannot register JInputHook MXBean", ex);
         }
-        return false;
     }
 
-    private static boolean extractLinuxNatives() {
+    /**
+     * @param listener registered global key listener.
+     * @return delivery counters of listener or <code>null</code> if not
+     * registered.
+     */
+    public static DeliveryStats getDeliveryStats(GlobalKeyListener listener) {
+        return context().getDeliveryStats(listener);
+    }
+
+    /**
+     * @param listener registered burst listener.
+     * @return delivery counters of listener or <code>null</code> if not
+     * registered.
+     */
+    public static DeliveryStats getDeliveryStats(BurstListener listener) {
+        return context().getDeliveryStats(listener);
+    }
+
+    /**
+     * @param shortcut registered shortcut.
+     * @param listener registered shortcut listener.
+     * @return delivery counters of listener or <code>null</code> if not
+     * registered.
+     */
+    public static DeliveryStats getDeliveryStats(Shortcut shortcut, ShortcutListener listener) {
+        return context().getDeliveryStats(shortcut, listener);
+    }
+
+    /**
+     * @param sequence registered shortcut sequence.
+     * @param listener registered shortcut listener.
+     * @return delivery counters of listener or <code>null</code> if not
+     * registered.
+     */
+    public static DeliveryStats getDeliveryStats(ShortcutSequence sequence, ShortcutListener listener) {
+        return context().getDeliveryStats(sequence, listener);
+    }
+
+    private static boolean extractMacNatives(Path cacheDirectory) {
+        return extractNatives(new NativeLibraryCache(cacheDirectory)//
+                .add("/libjinput-osx.jnilib", System.mapLibraryName("jinput-osx")));
+    }
+
+    private static boolean extractWindowsNatives(Path cacheDirectory) {
+        // JInput loads both from same directory
         if (OSDetector.isOSx86()) {
-            return extractNative("/libjinput-linux.so");
+            return extractNatives(new NativeLibraryCache(cacheDirectory)//
+                    .add("/jinput-dx8.dll", null).add("/jinput-raw.dll", null));
         } else {
-            return extractNative("/libjinput-linux64.so");
+            return extractNatives(new NativeLibraryCache(cacheDirectory)//
+                    .add("/jinput-dx8_64.dll", null).add("/jinput-raw_64.dll", null));
         }
     }
 
-    private static boolean extractNative(final String name) {
-        return extractNative(name, null);
+    private static boolean extractLinuxNatives(Path cacheDirectory) {
+        if (OSDetector.isOSx86()) {
+            return extractNatives(new NativeLibraryCache(cacheDirectory).add("/libjinput-linux.so", null));
+        } else {
+            return extractNatives(new NativeLibraryCache(cacheDirectory).add("/libjinput-linux64.so", null));
+        }
     }
 
-    private static boolean extractNative(String name, final String expectedName) {
-        // Finds a stream to the native file. Change path/class if necessary
-        try (final InputStream inputStream = JInputHook.class.getResourceAsStream(name)) {
-            name = expectedName == null ? name : expectedName;
-            if (inputStream != null) {
-                File nativeFile = new File(".", name);
-                if (!nativeFile.exists()) {
-                    File tmpDir = Files.createTempDirectory("JInputHook-").toFile();
-                    tmpDir.deleteOnExit();
-                    System.setProperty("net.java.games.input.librarypath", tmpDir.getAbsolutePath());
-                    nativeFile = new File(tmpDir, name);
-                    try (FileOutputStream outputStream = new FileOutputStream(nativeFile)) {
-                        final byte[] array = new byte[8192];
-                        for (int i = inputStream.read(array); i != -1; i = inputStream.read(array)) {
-                            outputStream.write(array, 0, i);
-                        }
-                    }
-                    nativeFile.deleteOnExit();
-                }
+    private static boolean extractNatives(NativeLibraryCache cache) {
+        try {
+            Path directory = cache.extract();
+            if (directory != null) {
+                System.setProperty("net.java.games.input.librarypath", directory.toAbsolutePath().toString());
                 return true;
             }
         } catch (final Throwable e) {
-            e.printStackTrace();
+            LOGGER.log(Level.SEVERE, "Cannot extract natives to cache directory.", e);
         }
         return false;
     }
 
-    private static final class KeyboardState {
+    /**
+     * Polls all devices in sequence holding JInputHook monitor, device updates
+     * wait the end of current cycle.
+     */
+    private final class SharedPoller extends Thread {
 
-        private final Keyboard keyboard;
-        private final Set<Key> keysPressed = new HashSet();
-        private final KeyboardEventQueue eventQueue;
+        private final KeyBatch cycleBatch = new KeyBatch();
 
-        private KeyboardState(Keyboard keyboard) {
-            this.keyboard = keyboard;
-            if (OSDetector.isUnix()) {
-                eventQueue = new PollKeyboardEventQueue();
-            } else {
-                eventQueue = new JInputKeyboardEventQueue();
-            }
-            eventQueue.updateQueue(keyboard);
+        private SharedPoller() {
+            super(null, null, "PoolingKeyboardThread", 16l * 1024l);
+            setDaemon(true);
         }
-    }
-
-    private static interface KeyboardEventQueue {
-
-        void updateQueue(Keyboard keyboard);
-
-        boolean getNextEvent(Event event);
-    }
-
-    private static class PollKeyboardEventQueue implements KeyboardEventQueue {
-
-        private Component[] components;
-        private float[] previousValues;
-        private int lastIndex = 0;
-        private float lastValue;
 
         @Override
-        public void updateQueue(Keyboard keyboard) {
-            this.components = keyboard.getComponents();
-            if (previousValues == null || previousValues.length != components.length) {
-                previousValues = new float[components.length];
-                if (keyboard.poll()) {
-                    for (int i = 0; i < components.length; i++) {
-                        previousValues[i] = components[i].getPollData();
+        public void run() {
+            boolean updateDevices;
+            boolean active = true;
+            long cycleStart;
+            long lastCycleStart = 0;
+            long rateStart = System.nanoTime();
+
+            while (!isInterrupted()) {
+                try {
+                    if (awaitDemand()) {
+                        try {
+                            synchronized (JInputHook.this) {
+                                for (KeyboardState keyboardState : keyboardStates) {
+                                    discardPending(keyboardState);
+                                }
+                            }
+                        } finally {
+                            resumed();
+                        }
+                        lastCycleStart = 0;
                     }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
-            }
-            lastIndex = 0;
-        }
-
-        @Override
-        public boolean getNextEvent(Event event) {
-            for (int i = lastIndex; i < components.length; i++) {
-                lastValue = components[i].getPollData();
-                if (lastValue != previousValues[i]) {
-                    event.set(components[i], lastValue, 0); // dont generate timestamp for performance reasons (last parameter)
-                    previousValues[i] = lastValue;
-                    i++;
-                    if (i == components.length) {
-                        i = 0;
+                synchronized (JInputHook.this) {
+                    cycleStart = System.nanoTime();
+                    if (lastCycleStart != 0) {
+                        metrics.recordPollInterval(cycleStart - lastCycleStart);
+                    }
+                    lastCycleStart = cycleStart;
+                    updateDevices = false;
+                    active = false;
+                    KeyBatch batch = isBatchActive() ? cycleBatch : null;
+                    for (KeyboardState keyboardState : keyboardStates) {
+                        int read = pollDevice(keyboardState, batch);
+                        if (read == -1) {
+                            updateDevices = true;
+                        } else if (read > 0) {
+                            active = true;
+                        }
+                    }
+                    if (batch != null) {
+                        publishBatch(batch);
+                    }
+                    long cycleEnd = System.nanoTime();
+                    metrics.recordPollCycle(cycleEnd - cycleStart);
+                    if (cycleEnd - rateStart >= 1000000000L) {
+                        for (KeyboardState keyboardState : keyboardStates) {
+                            keyboardState.updateRate();
+                        }
+                        rateStart = cycleEnd;
+                    }
+                    if (updateDevices) {
+                        metrics.recordPollFailure();
+                        updateInputDevices();
                     }
-                    lastIndex = i;
-                    return true;
                 }
-            }
 
-            lastIndex = 0;
-
-            try {
-                sleep(20);
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
+                try {
+                    pollingScheduler.awaitNextCycle(active);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
             }
-            return false;
         }
-
     }
 
-    private static class JInputKeyboardEventQueue implements KeyboardEventQueue {
+    /**
+     * Polls a single device without any shared lock, see
+     * {@link PollingMode#PER_DEVICE}.
+     */
+    private final class DevicePoller extends Thread {
 
-        private EventQueue eventQueue;
+        private final KeyboardState keyboardState;
+        private final PollingScheduler scheduler = pollingProfile.createScheduler();
+        private final KeyBatch cycleBatch = new KeyBatch();
 
-        @Override
-        public void updateQueue(Keyboard keyboard) {
-            this.eventQueue = keyboard.getEventQueue();
+        private DevicePoller(KeyboardState keyboardState) {
+            super(null, null, "PoolingKeyboardThread-" + keyboardState.id, 16l * 1024l);
+            setDaemon(true);
+            this.keyboardState = keyboardState;
         }
 
         @Override
-        public boolean getNextEvent(Event event) {
-            return eventQueue.getNextEvent(event);
+        public void run() {
+            boolean active = true;
+            long cycleStart;
+            long lastCycleStart = 0;
+            long rateStart = System.nanoTime();
+
+            while (!isInterrupted()) {
+                try {
+                    if (awaitDemand()) {
+                        try {
+                            discardPending(keyboardState);
+                        } finally {
+                            resumed();
+                        }
+                        lastCycleStart = 0;
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                cycleStart = System.nanoTime();
+                if (lastCycleStart != 0) {
+                    metrics.recordPollInterval(cycleStart - lastCycleStart);
+                }
+                lastCycleStart = cycleStart;
+                KeyBatch batch = isBatchActive() ? cycleBatch : null;
+                int read = pollDevice(keyboardState, batch);
+                active = read > 0;
+                if (batch != null) {
+                    publishBatch(batch);
+                }
+                long cycleEnd = System.nanoTime();
+                metrics.recordPollCycle(cycleEnd - cycleStart);
+                if (cycleEnd - rateStart >= 1000000000L) {
+                    keyboardState.updateRate();
+                    rateStart = cycleEnd;
+                }
+                if (read == -1) {
+                    metrics.recordPollFailure();
+                    // stops this poller if device was removed
+                    updateInputDevices();
+                }
+
+                try {
+                    scheduler.awaitNextCycle(active);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
         }
     }
 }
@@ -0,0 +1,979 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Isolated set of listeners, with its own dispatcher and metrics, fed by the
+ * single polling core of {@link JInputHook}.<br>
+ * Modules (like plugins) can use their own context, slow listeners of one
+ * context don't delay another one and each context can be closed
+ * independently. Static methods of {@link JInputHook} use the default
+ * context.
+ *
+ * @author dyorgio
+ * @see JInputHook#createContext(JInputHookOptions)
+ */
+public final class JInputHookContext implements Closeable {
+
+    private final JInputHook hook;
+    private final boolean defaultContext;
+
+    private final Object globalKeyboardListenersLock = new Object();
+    private volatile DeviceListeners globalKeyboardListeners = DeviceListeners.EMPTY;
+
+    private final Object shortcutListenersLock = new Object();
+    private volatile ShortcutIndex shortcutListeners = ShortcutIndex.EMPTY;
+    private volatile SequenceIndex sequenceListeners = SequenceIndex.EMPTY;
+
+    private final Object streamsLock = new Object();
+    private volatile EventStream[] keyStreams = EventStream.EMPTY;
+    private volatile EventStream[] deviceStreams = EventStream.EMPTY;
+
+    private final Object burstListenersLock = new Object();
+    private volatile ListenerDelivery[] burstListeners = ListenerDelivery.EMPTY;
+    private final BurstOptions burstOptions;
+
+    final BatchDispatcher batchDispatcher = new BatchDispatcher();
+    private final EventDispatcher eventDispatcher;
+
+    // current devices of polling core, replaced by devices updates
+    private volatile KeyboardState[] states;
+    // indexed by device slot, each item written only by device polling thread
+    private volatile DeviceState[] devices = new DeviceState[0];
+    private volatile boolean closed;
+
+    JInputHookContext(JInputHook hook, JInputHookOptions options, boolean defaultContext) {
+        this.hook = hook;
+        this.defaultContext = defaultContext;
+        this.burstOptions = options.getBurstOptions();
+        this.eventDispatcher = EventDispatcher.create(options, hook.getPollingMode(), new EventDispatcher.Handler() {
+            @Override
+            public ListenerDelivery[] getListeners(DispatchEvent event) {
+                switch (event.type) {
+                    case DispatchEvent.SHORTCUT:
+                        return event.entry.listeners.get(event.keyboard);
+                    case DispatchEvent.SEQUENCE:
+                        return event.sequence.listeners;
+                    case DispatchEvent.BURST:
+                        return burstListeners;
+                    default:
+                        return globalKeyboardListeners.get(event.keyboard);
+                }
+            }
+
+            @Override
+            public void handle(DispatchEvent event) {
+                for (ListenerDelivery listener : getListeners(event)) {
+                    if (listener.dispatched) {
+                        listener.invoke(event);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Called by polling core, holding its monitor, when devices change.
+     *
+     * @param keyboardStates current devices.
+     */
+    void updateDevices(KeyboardState[] keyboardStates) {
+        int maxSlot = -1;
+        for (KeyboardState state : keyboardStates) {
+            maxSlot = Math.max(maxSlot, state.slot);
+        }
+        DeviceState[] current = devices;
+        DeviceState[] newDevices = new DeviceState[maxSlot + 1];
+        for (KeyboardState state : keyboardStates) {
+            DeviceState device = state.slot < current.length ? current[state.slot] : null;
+            if (device == null || device.keyboard != state) {
+                device = new DeviceState(state);
+                if (burstOptions.matches(state.device.getName())) {
+                    device.burst = new BurstAccumulator(burstOptions);
+                }
+            }
+            newDevices[state.slot] = device;
+        }
+        devices = newDevices;
+        states = keyboardStates;
+        // after states, listeners changes resolve new devices too
+        synchronized (globalKeyboardListenersLock) {
+            globalKeyboardListeners = resolve(globalKeyboardListeners.all);
+        }
+        synchronized (shortcutListenersLock) {
+            for (ShortcutIndex.Entry entry : shortcutListeners.entries()) {
+                entry.listeners = resolve(entry.listeners.all);
+            }
+        }
+    }
+
+    /**
+     * @param listeners registered listeners.
+     * @return listeners of each current device.
+     */
+    private DeviceListeners resolve(ListenerDelivery[] listeners) {
+        KeyboardState[] current = states;
+        DeviceState[] currentDevices = devices;
+        if (current == null || current.length == 0) {
+            return new DeviceListeners(listeners, new KeyboardState[0], new ListenerDelivery[0][]);
+        }
+        int maxSlot = 0;
+        for (KeyboardState state : current) {
+            maxSlot = Math.max(maxSlot, state.slot);
+        }
+        KeyboardState[] owners = new KeyboardState[maxSlot + 1];
+        ListenerDelivery[][] byDevice = new ListenerDelivery[maxSlot + 1][];
+        for (KeyboardState state : current) {
+            DeviceState device = state.slot < currentDevices.length ? currentDevices[state.slot] : null;
+            boolean burst = device != null && device.keyboard == state && device.burst != null;
+            ListenerDelivery[] deviceListeners = listeners;
+            for (ListenerDelivery delivery : listeners) {
+                if (delivery.selector != null && !delivery.selector.matches(state.id, state.device, burst)) {
+                    deviceListeners = Snapshots.remove(deviceListeners, delivery);
+                }
+            }
+            owners[state.slot] = state;
+            byDevice[state.slot] = deviceListeners;
+        }
+        return new DeviceListeners(listeners, owners, byDevice);
+    }
+
+    /**
+     * @return context state of device or <code>null</code> if it was removed
+     * (its slot may belong to another device now).
+     */
+    private DeviceState device(KeyboardState keyboardState) {
+        DeviceState[] current = devices;
+        DeviceState device = keyboardState.slot < current.length ? current[keyboardState.slot] : null;
+        return device != null && device.keyboard == keyboardState ? device : null;
+    }
+
+    /**
+     * @return <code>true</code> if some listener or stream of this context
+     * needs device events.
+     */
+    boolean hasDemand() {
+        return !globalKeyboardListeners.isEmpty() || !shortcutListeners.isEmpty() || !sequenceListeners.isEmpty()
+                || burstListeners.length != 0 || keyStreams.length != 0 || batchDispatcher.isActive();
+    }
+
+    /**
+     * Called by polling thread before key is added to pressed keys.
+     */
+    void keyPressed(KeyboardState keyboardState, Key key, int ordinal, long captureNanos, long sourceNanos) {
+        DeviceState device = device(keyboardState);
+        if (closed || device == null) {
+            return;
+        }
+        if (burstListeners.length != 0 && device.burst != null) {
+            fireBurstCompleted(keyboardState, device.burst.expire(keyboardState.id, keyboardState.device.getName(), captureNanos));
+            fireBurstCompleted(keyboardState, device.burst.press(keyboardState.id, keyboardState.device.getName(), key, ordinal, keyboardState.keysPressed, captureNanos));
+            if (burstOptions.isExclusive()) {
+                return;
+            }
+        }
+        // shortcut only contexts don't pay key events dispatch
+        if (!globalKeyboardListeners.isEmpty() || keyStreams.length != 0) {
+            fireKeyPressed(keyboardState, key, captureNanos, sourceNanos);
+        }
+    }
+
+    /**
+     * Called by polling thread after key is added to pressed keys.
+     *
+     * @param ordinal pressed key ordinal or -1 if key isn't indexed.
+     */
+    void keysPressed(KeyboardState keyboardState, int ordinal, long captureNanos, long sourceNanos) {
+        DeviceState device = device(keyboardState);
+        if (closed || device == null || (burstListeners.length != 0 && device.burst != null && burstOptions.isExclusive())) {
+            return;
+        }
+        if (keyboardState.keysPressed.size() > 1) {
+            // same normalized keys, exact and modifier class shortcuts
+            ShortcutIndex.Entry[] candidates = shortcutListeners.candidates(keyboardState.normalizedPressed);
+            if (candidates != null) {
+                for (ShortcutIndex.Entry entry : candidates) {
+                    if (entry.shortcut.matches(keyboardState.keysPressed)) {
+                        fireShortcutPressed(keyboardState, entry, captureNanos, sourceNanos);
+                    }
+                }
+            }
+        }
+        SequenceIndex sequences = sequenceListeners;
+        if (!sequences.isEmpty()) {
+            advanceSequence(keyboardState, device, sequences, ordinal != -1 && ModifierClass.isModifier(ordinal), captureNanos, sourceNanos);
+        }
+    }
+
+    /**
+     * Called by polling thread after key is removed from pressed keys.
+     */
+    void keyReleased(KeyboardState keyboardState, Key key, long captureNanos, long sourceNanos) {
+        DeviceState device = device(keyboardState);
+        if (closed || device == null) {
+            return;
+        }
+        if (burstListeners.length != 0 && device.burst != null) {
+            fireBurstCompleted(keyboardState, device.burst.expire(keyboardState.id, keyboardState.device.getName(), captureNanos));
+            if (burstOptions.isExclusive()) {
+                return;
+            }
+        }
+        if (!globalKeyboardListeners.isEmpty() || keyStreams.length != 0) {
+            fireKeyReleased(keyboardState, key, captureNanos, sourceNanos);
+        }
+    }
+
+    /**
+     * Called by polling thread at end of each device poll.
+     */
+    void pollEnded(KeyboardState keyboardState) {
+        DeviceState device = device(keyboardState);
+        if (!closed && device != null && device.burst != null && burstListeners.length != 0) {
+            fireBurstCompleted(keyboardState, device.burst.expire(keyboardState.id, keyboardState.device.getName(), System.nanoTime()));
+        }
+    }
+
+    /**
+     * Called by polling thread when it resumes after parking, events read
+     * meanwhile were discarded.
+     */
+    void resetDevice(KeyboardState keyboardState) {
+        DeviceState device = device(keyboardState);
+        if (device != null) {
+            device.sequenceNodes.clear();
+            if (device.burst != null) {
+                device.burst = new BurstAccumulator(burstOptions);
+            }
+        }
+    }
+
+    /**
+     * Moves device on sequences trie with current pressed keys, a step that
+     * doesn't continue current sequence may start another one. Any other key
+     * breaks current sequence, except modifiers (they may be the beginning of
+     * next step).
+     */
+    private void advanceSequence(KeyboardState keyboardState, DeviceState device, SequenceIndex sequences, boolean modifier, long captureNanos, long sourceNanos) {
+        List<SequenceIndex.Node> nodes = device.sequenceNodes;
+        if (!nodes.isEmpty() && nodes.get(0).index != sequences) {
+            // sequences changed since last step
+            nodes.clear();
+        }
+        List<SequenceIndex.Node> next = device.nextSequenceNodes;
+        long elapsedNanos = captureNanos - device.sequenceStepNanos;
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.get(i).next(keyboardState.keysPressed, keyboardState.normalizedPressed, elapsedNanos, next);
+        }
+        if (next.isEmpty() && modifier) {
+            return;
+        }
+        if (next.isEmpty()) {
+            sequences.root.next(keyboardState.keysPressed, keyboardState.normalizedPressed, elapsedNanos, next);
+        }
+        nodes.clear();
+        device.sequenceNodes = next;
+        device.nextSequenceNodes = nodes;
+        if (next.isEmpty()) {
+            return;
+        }
+        device.sequenceStepNanos = captureNanos;
+        for (int i = 0; i < next.size(); i++) {
+            SequenceIndex.Node node = next.get(i);
+            if (node.entry != null) {
+                fireSequenceTriggered(keyboardState, node.entry, node.step, captureNanos, sourceNanos);
+            }
+        }
+        for (int i = next.size() - 1; i >= 0; i--) {
+            if (next.get(i).leaf) {
+                next.remove(i);
+            }
+        }
+    }
+
+    private void fireKeyPressed(KeyboardState keyboardState, Key key, long captureNanos, long sourceNanos) {
+        EventStream[] streams = keyStreams;
+        if (streams.length != 0) {
+            publish(streams, new HookEvent(HookEvent.Type.KEY_PRESSED, key, null, keyboardState.id, keyboardState.device.getName(), captureNanos));
+        }
+        fire(keyboardState, DispatchEvent.KEY_PRESSED, key, null, null, null, null, globalKeyboardListeners.get(keyboardState), captureNanos, sourceNanos);
+    }
+
+    private void fireKeyReleased(KeyboardState keyboardState, Key key, long captureNanos, long sourceNanos) {
+        EventStream[] streams = keyStreams;
+        if (streams.length != 0) {
+            publish(streams, new HookEvent(HookEvent.Type.KEY_RELEASED, key, null, keyboardState.id, keyboardState.device.getName(), captureNanos));
+        }
+        fire(keyboardState, DispatchEvent.KEY_RELEASED, key, null, null, null, null, globalKeyboardListeners.get(keyboardState), captureNanos, sourceNanos);
+    }
+
+    private void fireShortcutPressed(KeyboardState keyboardState, ShortcutIndex.Entry entry, long captureNanos, long sourceNanos) {
+        EventStream[] streams = entry.streams;
+        if (streams.length != 0) {
+            publish(streams, new HookEvent(HookEvent.Type.SHORTCUT, null, entry.shortcut, keyboardState.id, keyboardState.device.getName(), captureNanos));
+        }
+        fire(keyboardState, DispatchEvent.SHORTCUT, null, entry, null, entry.shortcut, null, entry.listeners.get(keyboardState), captureNanos, sourceNanos);
+    }
+
+    private void fireSequenceTriggered(KeyboardState keyboardState, SequenceIndex.Entry sequence, Shortcut lastStep, long captureNanos, long sourceNanos) {
+        fire(keyboardState, DispatchEvent.SEQUENCE, null, null, sequence, lastStep, null, sequence.listeners, captureNanos, sourceNanos);
+    }
+
+    private void fireBurstCompleted(KeyboardState keyboardState, Burst burst) {
+        if (burst != null) {
+            fire(keyboardState, DispatchEvent.BURST, null, null, null, null, burst, burstListeners, burst.getLastNanos(), 0);
+        }
+    }
+
+    /**
+     * Called by polling core on devices updates.
+     */
+    void fireDevice(KeyboardState keyboardState, HookEvent.Type type) {
+        EventStream[] streams = deviceStreams;
+        if (streams.length != 0) {
+            publish(streams, new HookEvent(type, null, null, keyboardState.id, keyboardState.device.getName(), System.nanoTime()));
+        }
+    }
+
+    private static void publish(EventStream[] streams, HookEvent event) {
+        for (EventStream stream : streams) {
+            stream.offer(event);
+        }
+    }
+
+    private void fire(KeyboardState keyboardState, int type, Key key, ShortcutIndex.Entry entry, SequenceIndex.Entry sequence, Shortcut shortcut, Burst burst, ListenerDelivery[] listeners, long captureNanos, long sourceNanos) {
+        if (listeners.length == 0) {
+            return;
+        }
+        // only used by device poller, shared by contexts
+        DispatchEvent pollEvent = keyboardState.pollEvent;
+        pollEvent.set(keyboardState, type, key, entry, sequence, shortcut, burst, captureNanos, sourceNanos);
+        boolean dispatch = false;
+        for (ListenerDelivery listener : listeners) {
+            if (listener.dispatched) {
+                dispatch = true;
+            } else {
+                listener.deliver(pollEvent);
+            }
+        }
+        if (dispatch) {
+            eventDispatcher.dispatch(pollEvent);
+        }
+        pollEvent.clear();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("JInputHook context closed.");
+        }
+    }
+
+    /**
+     * @return events waiting to be delivered to listeners of this context (on
+     * {@link DispatchMode#EXECUTOR} mode, events being delivered).
+     */
+    public int getDispatchQueueDepth() {
+        checkOpen();
+        return eventDispatcher.getQueueDepth();
+    }
+
+    public boolean addListener(GlobalKeyListener listener) {
+        return addListener(listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a global key listener.
+     *
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered.
+     */
+    public boolean addListener(GlobalKeyListener listener, DeliveryPolicy policy) {
+        return addListener(null, listener, policy);
+    }
+
+    public boolean addListener(DeviceSelector selector, GlobalKeyListener listener) {
+        return addListener(selector, listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a key listener of some devices, only events of selected
+     * devices are dispatched to it.
+     *
+     * @param selector devices of listener, <code>null</code> for all.
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered.
+     */
+    public boolean addListener(DeviceSelector selector, GlobalKeyListener listener, DeliveryPolicy policy) {
+        checkOpen();
+        if (listener == null || policy == null) {
+            throw new IllegalArgumentException("Listener and policy cannot be null.");
+        }
+        synchronized (globalKeyboardListenersLock) {
+            if (ListenerDelivery.find(globalKeyboardListeners.all, listener) != null) {
+                return false;
+            }
+            globalKeyboardListeners = resolve(Snapshots.add(globalKeyboardListeners.all, new ListenerDelivery(listener, policy, selector)));
+        }
+        hook.signalDemand();
+        return true;
+    }
+
+    public boolean removeListener(GlobalKeyListener listener) {
+        checkOpen();
+        synchronized (globalKeyboardListenersLock) {
+            ListenerDelivery delivery = ListenerDelivery.find(globalKeyboardListeners.all, listener);
+            if (delivery == null) {
+                return false;
+            }
+            globalKeyboardListeners = resolve(Snapshots.remove(globalKeyboardListeners.all, delivery));
+            delivery.close();
+            return true;
+        }
+    }
+
+    /**
+     * Register a listener that receives all key transitions of one poll cycle
+     * at once, on its own thread.
+     *
+     * @param listener listener.
+     * @return <code>false</code> if listener was already registered.
+     */
+    public boolean addBatchListener(GlobalKeyBatchListener listener) {
+        checkOpen();
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null.");
+        }
+        boolean added = batchDispatcher.addListener(listener);
+        hook.signalDemand();
+        return added;
+    }
+
+    public boolean removeBatchListener(GlobalKeyBatchListener listener) {
+        checkOpen();
+        return batchDispatcher.removeListener(listener);
+    }
+
+    public boolean addBurstListener(BurstListener listener) {
+        return addBurstListener(listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a listener of texts typed in bursts by devices of
+     * {@link JInputHookOptions#getBurstOptions()}, like barcode scanners.
+     *
+     * @param listener listener.
+     * @param policy how bursts are delivered to this listener.
+     * @return <code>false</code> if listener was already registered.
+     */
+    public boolean addBurstListener(BurstListener listener, DeliveryPolicy policy) {
+        checkOpen();
+        if (listener == null || policy == null) {
+            throw new IllegalArgumentException("Listener and policy cannot be null.");
+        }
+        synchronized (burstListenersLock) {
+            if (ListenerDelivery.find(burstListeners, listener) != null) {
+                return false;
+            }
+            burstListeners = Snapshots.add(burstListeners, new ListenerDelivery(listener, policy));
+        }
+        hook.signalDemand();
+        return true;
+    }
+
+    public boolean removeBurstListener(BurstListener listener) {
+        checkOpen();
+        synchronized (burstListenersLock) {
+            ListenerDelivery delivery = ListenerDelivery.find(burstListeners, listener);
+            if (delivery == null) {
+                return false;
+            }
+            burstListeners = Snapshots.remove(burstListeners, delivery);
+            delivery.close();
+            return true;
+        }
+    }
+
+    public boolean addShortcutListener(Shortcut shortcut, ShortcutListener listener) {
+        return addShortcutListener(shortcut, listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a shortcut listener.
+     *
+     * @param shortcut shortcut.
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered for this
+     * shortcut.
+     */
+    public boolean addShortcutListener(Shortcut shortcut, ShortcutListener listener, DeliveryPolicy policy) {
+        return addShortcutListener(null, shortcut, listener, policy);
+    }
+
+    public boolean addShortcutListener(DeviceSelector selector, Shortcut shortcut, ShortcutListener listener) {
+        return addShortcutListener(selector, shortcut, listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a shortcut listener of some devices, only shortcuts pressed on
+     * selected devices are dispatched to it.
+     *
+     * @param selector devices of listener, <code>null</code> for all.
+     * @param shortcut shortcut.
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered for this
+     * shortcut.
+     */
+    public boolean addShortcutListener(DeviceSelector selector, Shortcut shortcut, ShortcutListener listener, DeliveryPolicy policy) {
+        checkOpen();
+        if (shortcut == null || listener == null || policy == null) {
+            throw new IllegalArgumentException("Shortcut, listener and policy cannot be null.");
+        }
+        synchronized (shortcutListenersLock) {
+            ShortcutIndex.Entry entry = shortcutListeners.get(shortcut);
+            if (entry == null) {
+                entry = new ShortcutIndex.Entry(shortcut);
+                shortcutListeners = shortcutListeners.with(entry);
+            }
+            if (ListenerDelivery.find(entry.listeners.all, listener) != null) {
+                return false;
+            }
+            entry.listeners = resolve(Snapshots.add(entry.listeners.all, new ListenerDelivery(listener, policy, selector)));
+        }
+        hook.signalDemand();
+        return true;
+    }
+
+    public boolean removeShortcutListener(Shortcut shortcut) {
+        checkOpen();
+        synchronized (shortcutListenersLock) {
+            ShortcutIndex.Entry entry = shortcutListeners.get(shortcut);
+            if (entry != null && !entry.listeners.isEmpty()) {
+                ListenerDelivery[] listeners = entry.listeners.all;
+                entry.listeners = DeviceListeners.EMPTY;
+                // streams of this shortcut keep it registered
+                if (entry.isUnused()) {
+                    shortcutListeners = shortcutListeners.without(Collections.singleton(entry));
+                }
+                for (ListenerDelivery delivery : listeners) {
+                    delivery.close();
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean removeShortcutListener(Shortcut shortcut, ShortcutListener listener) {
+        checkOpen();
+        synchronized (shortcutListenersLock) {
+            ShortcutIndex.Entry entry = shortcutListeners.get(shortcut);
+            if (entry != null) {
+                ListenerDelivery delivery = ListenerDelivery.find(entry.listeners.all, listener);
+                if (delivery != null) {
+                    entry.listeners = resolve(Snapshots.remove(entry.listeners.all, delivery));
+                    delivery.close();
+                    if (entry.isUnused()) {
+                        shortcutListeners = shortcutListeners.without(Collections.singleton(entry));
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public boolean removeShortcutListener(ShortcutListener listener) {
+        checkOpen();
+        synchronized (shortcutListenersLock) {
+            boolean removed = false;
+            Set<ShortcutIndex.Entry> toRemove = new HashSet();
+            for (ShortcutIndex.Entry entry : shortcutListeners.entries()) {
+                ListenerDelivery delivery = ListenerDelivery.find(entry.listeners.all, listener);
+                if (delivery != null) {
+                    entry.listeners = resolve(Snapshots.remove(entry.listeners.all, delivery));
+                    delivery.close();
+                    removed = true;
+                    if (entry.isUnused()) {
+                        toRemove.add(entry);
+                    }
+                }
+            }
+            shortcutListeners = shortcutListeners.without(toRemove);
+
+            Set<SequenceIndex.Entry> sequencesToRemove = new HashSet();
+            for (SequenceIndex.Entry entry : sequenceListeners.entries()) {
+                ListenerDelivery delivery = ListenerDelivery.find(entry.listeners, listener);
+                if (delivery != null) {
+                    entry.listeners = Snapshots.remove(entry.listeners, delivery);
+                    delivery.close();
+                    removed = true;
+                    if (entry.listeners.length == 0) {
+                        sequencesToRemove.add(entry);
+                    }
+                }
+            }
+            sequenceListeners = sequenceListeners.without(sequencesToRemove);
+
+            return removed;
+        }
+    }
+
+    public boolean addShortcutListener(ShortcutSequence sequence, ShortcutListener listener) {
+        return addShortcutListener(sequence, listener, DeliveryPolicy.dispatcher());
+    }
+
+    /**
+     * Register a shortcut sequence listener, it receives last step of
+     * sequence, and sequence from {@link DispatchContext#getShortcutSequence()}.
+     *
+     * @param sequence shortcut sequence.
+     * @param listener listener.
+     * @param policy how events are delivered to this listener.
+     * @return <code>false</code> if listener was already registered for this
+     * sequence.
+     */
+    public boolean addShortcutListener(ShortcutSequence sequence, ShortcutListener listener, DeliveryPolicy policy) {
+        checkOpen();
+        if (sequence == null || listener == null || policy == null) {
+            throw new IllegalArgumentException("Sequence, listener and policy cannot be null.");
+        }
+        synchronized (shortcutListenersLock) {
+            SequenceIndex.Entry entry = sequenceListeners.get(sequence);
+            if (entry == null) {
+                entry = new SequenceIndex.Entry(sequence);
+                sequenceListeners = sequenceListeners.with(entry);
+            }
+            if (ListenerDelivery.find(entry.listeners, listener) != null) {
+                return false;
+            }
+            entry.listeners = Snapshots.add(entry.listeners, new ListenerDelivery(listener, policy));
+        }
+        hook.signalDemand();
+        return true;
+    }
+
+    public boolean removeShortcutListener(ShortcutSequence sequence) {
+        checkOpen();
+        synchronized (shortcutListenersLock) {
+            SequenceIndex.Entry entry = sequenceListeners.get(sequence);
+            if (entry != null) {
+                sequenceListeners = sequenceListeners.without(Collections.singleton(entry));
+                for (ListenerDelivery delivery : entry.listeners) {
+                    delivery.close();
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean removeShortcutListener(ShortcutSequence sequence, ShortcutListener listener) {
+        checkOpen();
+        synchronized (shortcutListenersLock) {
+            SequenceIndex.Entry entry = sequenceListeners.get(sequence);
+            if (entry != null) {
+                ListenerDelivery delivery = ListenerDelivery.find(entry.listeners, listener);
+                if (delivery != null) {
+                    entry.listeners = Snapshots.remove(entry.listeners, delivery);
+                    delivery.close();
+                    if (entry.listeners.length == 0) {
+                        sequenceListeners = sequenceListeners.without(Collections.singleton(entry));
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Register a stream of events, used by reactive adapters.
+     */
+    void addStream(EventStream stream) {
+        checkOpen();
+        stream.context = this;
+        switch (stream.kind) {
+            case EventStream.SHORTCUT:
+                synchronized (shortcutListenersLock) {
+                    ShortcutIndex.Entry entry = shortcutListeners.get(stream.shortcut);
+                    if (entry == null) {
+                        entry = new ShortcutIndex.Entry(stream.shortcut);
+                        shortcutListeners = shortcutListeners.with(entry);
+                    }
+                    entry.streams = Snapshots.add(entry.streams, stream);
+                }
+                break;
+            case EventStream.DEVICES:
+                synchronized (streamsLock) {
+                    deviceStreams = Snapshots.add(deviceStreams, stream);
+                }
+                break;
+            default:
+                synchronized (streamsLock) {
+                    keyStreams = Snapshots.add(keyStreams, stream);
+                }
+        }
+        if (closed || stream.isCancelled()) {
+            // closed after shutdown collected streams, or cancelled before registration
+            removeStream(stream);
+            stream.terminate(null);
+            return;
+        }
+        hook.signalDemand();
+    }
+
+    /**
+     * Called by cancelled or failed streams.
+     */
+    void removeStream(EventStream stream) {
+        switch (stream.kind) {
+            case EventStream.SHORTCUT:
+                synchronized (shortcutListenersLock) {
+                    ShortcutIndex.Entry entry = shortcutListeners.get(stream.shortcut);
+                    if (entry != null) {
+                        entry.streams = Snapshots.remove(entry.streams, stream);
+                        if (entry.isUnused()) {
+                            shortcutListeners = shortcutListeners.without(Collections.singleton(entry));
+                        }
+                    }
+                }
+                break;
+            case EventStream.DEVICES:
+                synchronized (streamsLock) {
+                    deviceStreams = Snapshots.remove(deviceStreams, stream);
+                }
+                break;
+            default:
+                synchronized (streamsLock) {
+                    keyStreams = Snapshots.remove(keyStreams, stream);
+                }
+        }
+    }
+
+    /**
+     * @return snapshot of shared poll loop and devices metrics, with
+     * dispatcher and listeners metrics of this context.
+     */
+    public JInputHookMetrics getMetrics() {
+        checkOpen();
+        Map<String, Long> listenerDelivered = new LinkedHashMap();
+        Map<String, Long> listenerCallbackNanos = new LinkedHashMap();
+        Map<String, Long> listenerMaxCallbackNanos = new LinkedHashMap();
+        collectListenerMetrics(listenerDelivered, listenerCallbackNanos, listenerMaxCallbackNanos);
+        return hook.createMetrics(eventDispatcher.getQueueDepth(), eventDispatcher.getActiveThreads(), eventDispatcher.getDroppedEvents(), batchDispatcher.getDropped(),
+                listenerDelivered, listenerCallbackNanos, listenerMaxCallbackNanos);
+    }
+
+    int getDispatchActiveThreads() {
+        return eventDispatcher.getActiveThreads();
+    }
+
+    long getDispatchDroppedEvents() {
+        return eventDispatcher.getDroppedEvents();
+    }
+
+    long getBatchDroppedEvents() {
+        return batchDispatcher.getDropped();
+    }
+
+    /**
+     * Reads current listeners counters of this context.
+     */
+    void collectListenerMetrics(Map<String, Long> listenerDelivered, Map<String, Long> listenerCallbackNanos, Map<String, Long> listenerMaxCallbackNanos) {
+        for (ListenerDelivery delivery : globalKeyboardListeners.all) {
+            String name = "global:" + delivery.listener;
+            listenerDelivered.put(name, delivery.getDelivered());
+            listenerCallbackNanos.put(name, delivery.getCallbackNanos());
+            listenerMaxCallbackNanos.put(name, delivery.getMaxCallbackNanos());
+        }
+        for (ListenerDelivery delivery : burstListeners) {
+            String name = "burst:" + delivery.listener;
+            listenerDelivered.put(name, delivery.getDelivered());
+            listenerCallbackNanos.put(name, delivery.getCallbackNanos());
+            listenerMaxCallbackNanos.put(name, delivery.getMaxCallbackNanos());
+        }
+        for (ShortcutIndex.Entry entry : shortcutListeners.entries()) {
+            for (ListenerDelivery delivery : entry.listeners.all) {
+                String name = entry.shortcut + ":" + delivery.listener;
+                listenerDelivered.put(name, delivery.getDelivered());
+                listenerCallbackNanos.put(name, delivery.getCallbackNanos());
+                listenerMaxCallbackNanos.put(name, delivery.getMaxCallbackNanos());
+            }
+        }
+        for (SequenceIndex.Entry entry : sequenceListeners.entries()) {
+            for (ListenerDelivery delivery : entry.listeners) {
+                String name = entry.sequence + ":" + delivery.listener;
+                listenerDelivered.put(name, delivery.getDelivered());
+                listenerCallbackNanos.put(name, delivery.getCallbackNanos());
+                listenerMaxCallbackNanos.put(name, delivery.getMaxCallbackNanos());
+            }
+        }
+    }
+
+    /**
+     * @param listener registered global key listener.
+     * @return delivery counters of listener or <code>null</code> if not
+     * registered.
+     */
+    public DeliveryStats getDeliveryStats(GlobalKeyListener listener) {
+        checkOpen();
+        return ListenerDelivery.find(globalKeyboardListeners.all, listener);
+    }
+
+    /**
+     * @param listener registered burst listener.
+     * @return delivery counters of listener or <code>null</code> if not
+     * registered.
+     */
+    public DeliveryStats getDeliveryStats(BurstListener listener) {
+        checkOpen();
+        return ListenerDelivery.find(burstListeners, listener);
+    }
+
+    /**
+     * @param shortcut registered shortcut.
+     * @param listener registered shortcut listener.
+     * @return delivery counters of listener or <code>null</code> if not
+     * registered.
+     */
+    public DeliveryStats getDeliveryStats(Shortcut shortcut, ShortcutListener listener) {
+        checkOpen();
+        ShortcutIndex.Entry entry = shortcutListeners.get(shortcut);
+        return entry == null ? null : ListenerDelivery.find(entry.listeners.all, listener);
+    }
+
+    /**
+     * @param sequence registered shortcut sequence.
+     * @param listener registered shortcut listener.
+     * @return delivery counters of listener or <code>null</code> if not
+     * registered.
+     */
+    public DeliveryStats getDeliveryStats(ShortcutSequence sequence, ShortcutListener listener) {
+        checkOpen();
+        SequenceIndex.Entry entry = sequenceListeners.get(sequence);
+        return entry == null ? null : ListenerDelivery.find(entry.listeners, listener);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Unregisters this context from polling core and stops its dispatcher
+     * and listener queues, other contexts aren't affected.
+     *
+     * @throws IllegalStateException if it is the default context, used by
+     * static methods of {@link JInputHook}.
+     */
+    @Override
+    public void close() {
+        if (defaultContext) {
+            throw new IllegalStateException("Default JInputHook context cannot be closed.");
+        }
+        if (!closed) {
+            hook.removeContext(this);
+            shutdown(null);
+        }
+    }
+
+    /**
+     * Stops dispatcher and listener queues, pending events are discarded and
+     * streams are ended.
+     *
+     * @param cause failure sent to streams, <code>null</code> to complete
+     * them.
+     */
+    void shutdown(Throwable cause) {
+        closed = true;
+        List<EventStream[]> streams = new ArrayList();
+        eventDispatcher.shutdown();
+        batchDispatcher.shutdown();
+        synchronized (globalKeyboardListenersLock) {
+            for (ListenerDelivery delivery : globalKeyboardListeners.all) {
+                delivery.close();
+            }
+            globalKeyboardListeners = DeviceListeners.EMPTY;
+        }
+        synchronized (burstListenersLock) {
+            for (ListenerDelivery delivery : burstListeners) {
+                delivery.close();
+            }
+            burstListeners = ListenerDelivery.EMPTY;
+        }
+        synchronized (shortcutListenersLock) {
+            for (ShortcutIndex.Entry entry : shortcutListeners.entries()) {
+                for (ListenerDelivery delivery : entry.listeners.all) {
+                    delivery.close();
+                }
+            }
+            for (SequenceIndex.Entry entry : sequenceListeners.entries()) {
+                for (ListenerDelivery delivery : entry.listeners) {
+                    delivery.close();
+                }
+            }
+            for (ShortcutIndex.Entry entry : shortcutListeners.entries()) {
+                streams.add(entry.streams);
+            }
+            shortcutListeners = ShortcutIndex.EMPTY;
+            sequenceListeners = SequenceIndex.EMPTY;
+        }
+        synchronized (streamsLock) {
+            streams.add(keyStreams);
+            streams.add(deviceStreams);
+            keyStreams = EventStream.EMPTY;
+            deviceStreams = EventStream.EMPTY;
+        }
+        // outside of locks, streams lock themselves before removal
+        for (EventStream[] array : streams) {
+            for (EventStream stream : array) {
+                stream.terminate(cause);
+            }
+        }
+    }
+
+    /**
+     * Context state of a device, written only by its polling thread.
+     */
+    private static final class DeviceState {
+
+        private final KeyboardState keyboard;
+        // only on burst mode devices
+        private BurstAccumulator burst;
+        // current nodes on sequences trie, empty on root
+        private List<SequenceIndex.Node> sequenceNodes = new ArrayList();
+        // reused to collect next nodes
+        private List<SequenceIndex.Node> nextSequenceNodes = new ArrayList();
+        private long sequenceStepNanos;
+
+        private DeviceState(KeyboardState keyboard) {
+            this.keyboard = keyboard;
+        }
+    }
+}
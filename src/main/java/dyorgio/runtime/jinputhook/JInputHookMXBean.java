@@ -0,0 +1,125 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.Map;
+
+/**
+ * JMX view of JInputHook metrics, registered as
+ * <code>dyorgio.runtime.jinputhook:type=JInputHook</code>.
+ *
+ * @author dyorgio
+ * @see JInputHook#getMetrics()
+ * @see JInputHookOptions#setJmxEnabled(boolean)
+ */
+public interface JInputHookMXBean {
+
+    /**
+     * @return poll cycles executed.
+     */
+    long getPollCycles();
+
+    /**
+     * Index <code>i</code> counts poll cycles that took from
+     * <code>2^(i-1)</code> (inclusive) to <code>2^i</code> (exclusive)
+     * nanoseconds, last index counts all longer cycles.
+     *
+     * @return log2 histogram of poll cycles duration.
+     */
+    long[] getPollCycleHistogram();
+
+    /**
+     * @return upper bound of median poll cycle duration.
+     */
+    long getPollCycleP50Nanos();
+
+    /**
+     * @return upper bound of 99th percentile of poll cycle duration.
+     */
+    long getPollCycleP99Nanos();
+
+    /**
+     * @return average time between poll cycles start, including wait of
+     * {@link PollingScheduler}.
+     */
+    long getPollIntervalNanos();
+
+    /**
+     * @return poll cycles where at least one device failed to poll.
+     */
+    long getPollFailures();
+
+    /**
+     * @return devices updates executed (startup, device changes and poll
+     * failures).
+     */
+    long getDeviceRescans();
+
+    /**
+     * @return total time spent updating devices.
+     */
+    long getDeviceRescanNanos();
+
+    long getMaxDeviceRescanNanos();
+
+    /**
+     * @return events read by each device (key is device id and name).
+     */
+    Map<String, Long> getDeviceEvents();
+
+    /**
+     * @return events read by each device in last second (key is device id and
+     * name).
+     */
+    Map<String, Long> getDeviceEventsPerSecond();
+
+    /**
+     * @return events waiting on dispatcher.
+     * @see JInputHook#getDispatchQueueDepth()
+     */
+    int getDispatchQueueDepth();
+
+    /**
+     * @return dispatcher threads delivering events.
+     */
+    int getDispatchActiveThreads();
+
+    /**
+     * @return events dropped because dispatcher ring was full
+     * ({@link DispatchMode#RING_BUFFER}).
+     */
+    long getDispatchDroppedEvents();
+
+    /**
+     * @return events dropped because batch listeners didn't keep up.
+     */
+    long getBatchDroppedEvents();
+
+    /**
+     * @return callbacks executed by each listener.
+     */
+    Map<String, Long> getListenerDelivered();
+
+    /**
+     * @return total time spent inside callbacks of each listener.
+     */
+    Map<String, Long> getListenerCallbackNanos();
+
+    /**
+     * @return slowest callback of each listener.
+     */
+    Map<String, Long> getListenerMaxCallbackNanos();
+}
@@ -0,0 +1,196 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of JInputHook metrics.
+ *
+ * @author dyorgio
+ * @see JInputHook#getMetrics()
+ */
+public final class JInputHookMetrics implements JInputHookMXBean {
+
+    private final long[] pollCycleHistogram;
+    private final long pollCycles;
+    private final long pollIntervalNanos;
+    private final long pollFailures;
+    private final long deviceRescans;
+    private final long deviceRescanNanos;
+    private final long maxDeviceRescanNanos;
+    private final Map<String, Long> deviceEvents;
+    private final Map<String, Long> deviceEventsPerSecond;
+    private final int dispatchQueueDepth;
+    private final int dispatchActiveThreads;
+    private final long dispatchDroppedEvents;
+    private final long batchDroppedEvents;
+    private final Map<String, Long> listenerDelivered;
+    private final Map<String, Long> listenerCallbackNanos;
+    private final Map<String, Long> listenerMaxCallbackNanos;
+
+    JInputHookMetrics(PollMetrics metrics, Map<String, Long> deviceEvents, Map<String, Long> deviceEventsPerSecond,
+            int dispatchQueueDepth, int dispatchActiveThreads, long dispatchDroppedEvents, long batchDroppedEvents,
+            Map<String, Long> listenerDelivered, Map<String, Long> listenerCallbackNanos, Map<String, Long> listenerMaxCallbackNanos) {
+        this.pollCycleHistogram = metrics.getPollCycles();
+        long cycles = 0;
+        for (long count : pollCycleHistogram) {
+            cycles += count;
+        }
+        this.pollCycles = cycles;
+        this.pollIntervalNanos = metrics.getPollIntervalNanos();
+        this.pollFailures = metrics.getPollFailures();
+        this.deviceRescans = metrics.getRescans();
+        this.deviceRescanNanos = metrics.getRescanNanos();
+        this.maxDeviceRescanNanos = metrics.getMaxRescanNanos();
+        this.deviceEvents = Collections.unmodifiableMap(deviceEvents);
+        this.deviceEventsPerSecond = Collections.unmodifiableMap(deviceEventsPerSecond);
+        this.dispatchQueueDepth = dispatchQueueDepth;
+        this.dispatchActiveThreads = dispatchActiveThreads;
+        this.dispatchDroppedEvents = dispatchDroppedEvents;
+        this.batchDroppedEvents = batchDroppedEvents;
+        this.listenerDelivered = Collections.unmodifiableMap(listenerDelivered);
+        this.listenerCallbackNanos = Collections.unmodifiableMap(listenerCallbackNanos);
+        this.listenerMaxCallbackNanos = Collections.unmodifiableMap(listenerMaxCallbackNanos);
+    }
+
+    @Override
+    public long getPollCycles() {
+        return pollCycles;
+    }
+
+    @Override
+    public long[] getPollCycleHistogram() {
+        return pollCycleHistogram.clone();
+    }
+
+    /**
+     * @param percentile percentile from 0 to 100.
+     * @return upper bound (power of two) of poll cycle duration percentile, 0
+     * if no cycles were executed.
+     */
+    public long getPollCyclePercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        return percentileNanos(pollCycleHistogram, pollCycles, percentile);
+    }
+
+    static long percentileNanos(long[] histogram, long cycles, double percentile) {
+        if (cycles == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(cycles * percentile / 100d);
+        long count = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            count += histogram[i];
+            if (count >= target && count > 0) {
+                return i == histogram.length - 1 ? Long.MAX_VALUE : 1L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public long getPollCycleP50Nanos() {
+        return getPollCyclePercentileNanos(50);
+    }
+
+    @Override
+    public long getPollCycleP99Nanos() {
+        return getPollCyclePercentileNanos(99);
+    }
+
+    @Override
+    public long getPollIntervalNanos() {
+        return pollIntervalNanos;
+    }
+
+    @Override
+    public long getPollFailures() {
+        return pollFailures;
+    }
+
+    @Override
+    public long getDeviceRescans() {
+        return deviceRescans;
+    }
+
+    @Override
+    public long getDeviceRescanNanos() {
+        return deviceRescanNanos;
+    }
+
+    @Override
+    public long getMaxDeviceRescanNanos() {
+        return maxDeviceRescanNanos;
+    }
+
+    @Override
+    public Map<String, Long> getDeviceEvents() {
+        return deviceEvents;
+    }
+
+    @Override
+    public Map<String, Long> getDeviceEventsPerSecond() {
+        return deviceEventsPerSecond;
+    }
+
+    @Override
+    public int getDispatchQueueDepth() {
+        return dispatchQueueDepth;
+    }
+
+    @Override
+    public int getDispatchActiveThreads() {
+        return dispatchActiveThreads;
+    }
+
+    @Override
+    public long getDispatchDroppedEvents() {
+        return dispatchDroppedEvents;
+    }
+
+    @Override
+    public long getBatchDroppedEvents() {
+        return batchDroppedEvents;
+    }
+
+    @Override
+    public Map<String, Long> getListenerDelivered() {
+        return listenerDelivered;
+    }
+
+    @Override
+    public Map<String, Long> getListenerCallbackNanos() {
+        return listenerCallbackNanos;
+    }
+
+    @Override
+    public Map<String, Long> getListenerMaxCallbackNanos() {
+        return listenerMaxCallbackNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "JInputHookMetrics{" + "pollCycles=" + pollCycles + ", pollCycleP50Nanos=" + getPollCycleP50Nanos()
+                + ", pollCycleP99Nanos=" + getPollCycleP99Nanos() + ", pollIntervalNanos=" + pollIntervalNanos + ", pollFailures=" + pollFailures
+                + ", deviceRescans=" + deviceRescans + ", deviceEventsPerSecond=" + deviceEventsPerSecond
+                + ", dispatchQueueDepth=" + dispatchQueueDepth + ", dispatchActiveThreads=" + dispatchActiveThreads
+                + ", dispatchDroppedEvents=" + dispatchDroppedEvents + ", batchDroppedEvents=" + batchDroppedEvents + ", listenerDelivered=" + listenerDelivered + '}';
+    }
+}
@@ -0,0 +1,192 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.nio.file.Path;
+
+/**
+ * JInputHook initialization options.
+ *
+ * @author dyorgio
+ */
+public final class JInputHookOptions {
+
+    private DispatchMode dispatchMode = DispatchMode.EXECUTOR;
+    private int dispatchThreads = 1;
+    private int ringBufferSize = 4096;
+    private boolean jmxEnabled = true;
+    private PollingProfile pollingProfile = PollingProfile.BALANCED;
+    private PollingScheduler pollingScheduler;
+    private PollingMode pollingMode = PollingMode.SHARED;
+    private BurstOptions burstOptions = new BurstOptions();
+    private Path nativeCacheDirectory = NativeLibraryCache.defaultDirectory();
+
+    public DispatchMode getDispatchMode() {
+        return dispatchMode;
+    }
+
+    public JInputHookOptions setDispatchMode(DispatchMode dispatchMode) {
+        if (dispatchMode == null) {
+            throw new IllegalArgumentException("Dispatch mode cannot be null.");
+        }
+        this.dispatchMode = dispatchMode;
+        return this;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    /**
+     * @param dispatchThreads number of threads of {@link DispatchMode#RING_BUFFER}
+     * mode, each device is always delivered by the same thread.
+     * @return this options.
+     */
+    public JInputHookOptions setDispatchThreads(int dispatchThreads) {
+        if (dispatchThreads < 1) {
+            throw new IllegalArgumentException("Dispatch threads must be 1 or more.");
+        }
+        this.dispatchThreads = dispatchThreads;
+        return this;
+    }
+
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    /**
+     * @param ringBufferSize events capacity of each dispatch thread on
+     * {@link DispatchMode#RING_BUFFER} mode, must be a power of two.
+     * @return this options.
+     */
+    public JInputHookOptions setRingBufferSize(int ringBufferSize) {
+        if (ringBufferSize < 2 || Integer.bitCount(ringBufferSize) != 1) {
+            throw new IllegalArgumentException("Ring buffer size must be a power of two.");
+        }
+        this.ringBufferSize = ringBufferSize;
+        return this;
+    }
+
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * @param jmxEnabled register {@link JInputHookMXBean} on platform MBean
+     * server (default <code>true</code>).
+     * @return this options.
+     */
+    public JInputHookOptions setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+        return this;
+    }
+
+    public PollingMode getPollingMode() {
+        return pollingMode;
+    }
+
+    /**
+     * @param pollingMode one thread for all keyboards (default
+     * {@link PollingMode#SHARED}) or one per keyboard.
+     * @return this options.
+     */
+    public JInputHookOptions setPollingMode(PollingMode pollingMode) {
+        if (pollingMode == null) {
+            throw new IllegalArgumentException("Polling mode cannot be null.");
+        }
+        this.pollingMode = pollingMode;
+        return this;
+    }
+
+    public BurstOptions getBurstOptions() {
+        return burstOptions;
+    }
+
+    /**
+     * @param burstOptions how keys are aggregated for {@link BurstListener}s.
+     * @return this options.
+     */
+    public JInputHookOptions setBurstOptions(BurstOptions burstOptions) {
+        if (burstOptions == null) {
+            throw new IllegalArgumentException("Burst options cannot be null.");
+        }
+        this.burstOptions = burstOptions;
+        return this;
+    }
+
+    public PollingProfile getPollingProfile() {
+        return pollingProfile;
+    }
+
+    /**
+     * @param pollingProfile how polling thread waits between cycles (default
+     * {@link PollingProfile#BALANCED}), replaces any custom scheduler.
+     * @return this options.
+     */
+    public JInputHookOptions setPollingProfile(PollingProfile pollingProfile) {
+        if (pollingProfile == null) {
+            throw new IllegalArgumentException("Polling profile cannot be null.");
+        }
+        this.pollingProfile = pollingProfile;
+        this.pollingScheduler = null;
+        return this;
+    }
+
+    /**
+     * @return custom scheduler or a new one of polling profile.
+     */
+    public PollingScheduler getPollingScheduler() {
+        return pollingScheduler != null ? pollingScheduler : pollingProfile.createScheduler();
+    }
+
+    boolean hasCustomPollingScheduler() {
+        return pollingScheduler != null;
+    }
+
+    /**
+     * @param pollingScheduler custom scheduler, used instead of polling
+     * profile (not supported by {@link PollingMode#PER_DEVICE}, that needs
+     * one scheduler per keyboard).
+     * @return this options.
+     */
+    public JInputHookOptions setPollingScheduler(PollingScheduler pollingScheduler) {
+        if (pollingScheduler == null) {
+            throw new IllegalArgumentException("Polling scheduler cannot be null.");
+        }
+        this.pollingScheduler = pollingScheduler;
+        return this;
+    }
+
+    public Path getNativeCacheDirectory() {
+        return nativeCacheDirectory;
+    }
+
+    /**
+     * @param nativeCacheDirectory where JInput natives are extracted and kept
+     * between starts, one subdirectory per natives checksum (default
+     * <code>jinputhook/natives</code> on user cache directory), must belong
+     * to current user (otherwise natives are extracted to a private
+     * temporary directory).
+     * @return this options.
+     */
+    public JInputHookOptions setNativeCacheDirectory(Path nativeCacheDirectory) {
+        if (nativeCacheDirectory == null) {
+            throw new IllegalArgumentException("Native cache directory cannot be null.");
+        }
+        this.nativeCacheDirectory = nativeCacheDirectory;
+        return this;
+    }
+}
@@ -0,0 +1,145 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.Arrays;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Reusable list of key transitions delivered to
+ * {@link GlobalKeyBatchListener}.<br>
+ * Stored in parallel arrays, adding events doesn't allocate after warm up.
+ *
+ * @author dyorgio
+ */
+public final class KeyBatch {
+
+    private int size;
+    private Key[] keys = new Key[64];
+    private boolean[] pressed = new boolean[64];
+    private int[] deviceIds = new int[64];
+    private String[] deviceNames = new String[64];
+    private long[] captureNanos = new long[64];
+    private long[] sourceNanos = new long[64];
+
+    KeyBatch() {
+    }
+
+    void add(int deviceId, String deviceName, Key key, boolean keyPressed, long eventCaptureNanos, long eventSourceNanos) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            pressed = Arrays.copyOf(pressed, capacity);
+            deviceIds = Arrays.copyOf(deviceIds, capacity);
+            deviceNames = Arrays.copyOf(deviceNames, capacity);
+            captureNanos = Arrays.copyOf(captureNanos, capacity);
+            sourceNanos = Arrays.copyOf(sourceNanos, capacity);
+        }
+        keys[size] = key;
+        pressed[size] = keyPressed;
+        deviceIds[size] = deviceId;
+        deviceNames[size] = deviceName;
+        captureNanos[size] = eventCaptureNanos;
+        sourceNanos[size] = eventSourceNanos;
+        size++;
+    }
+
+    void addAll(KeyBatch other, int count) {
+        for (int i = 0; i < count; i++) {
+            add(other.deviceIds[i], other.deviceNames[i], other.keys[i], other.pressed[i], other.captureNanos[i], other.sourceNanos[i]);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(deviceNames, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return number of transitions.
+     */
+    public int size() {
+        return size;
+    }
+
+    public Key getKey(int index) {
+        checkIndex(index);
+        return keys[index];
+    }
+
+    /**
+     * @param index transition index.
+     * @return <code>true</code> for key pressed, <code>false</code> for key
+     * released.
+     */
+    public boolean isPressed(int index) {
+        checkIndex(index);
+        return pressed[index];
+    }
+
+    /**
+     * @param index transition index.
+     * @return id of keyboard, stable while device stays connected.
+     */
+    public int getDeviceId(int index) {
+        checkIndex(index);
+        return deviceIds[index];
+    }
+
+    public String getDeviceName(int index) {
+        checkIndex(index);
+        return deviceNames[index];
+    }
+
+    /**
+     * @param index transition index.
+     * @return {@link System#nanoTime()} when transition was read.
+     */
+    public long getCaptureNanos(int index) {
+        checkIndex(index);
+        return captureNanos[index];
+    }
+
+    /**
+     * @param index transition index.
+     * @return source timestamp in nanoseconds, 0 if source doesn't provide
+     * it.
+     * @see DispatchContext#getSourceNanos()
+     */
+    public long getSourceNanos(int index) {
+        checkIndex(index);
+        return sourceNanos[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("KeyBatch{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(deviceIds[i]).append(':').append(keys[i]).append(pressed[i] ? "+" : "-");
+        }
+        return builder.append('}').toString();
+    }
+}
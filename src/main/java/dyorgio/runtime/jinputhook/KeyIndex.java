@@ -0,0 +1,112 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Stable ordinal of each {@link Key}, used as bit index by {@link KeySet}.<br>
+ * JInput keys are sorted by name (same order of {@link Shortcut} keys), keys
+ * unknown at startup receive next free ordinals.
+ *
+ * @author dyorgio
+ */
+final class KeyIndex {
+
+    static final int CAPACITY = 256;
+
+    private static final Key[] KEYS = new Key[CAPACITY];
+    private static volatile Map<Key, Integer> ORDINALS;
+    private static int SIZE;
+
+    static {
+        List<Key> keys = new ArrayList();
+        for (Field field : Key.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == Key.class) {
+                try {
+                    keys.add((Key) field.get(null));
+                } catch (IllegalAccessException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }
+        Collections.sort(keys, new Comparator<Key>() {
+            @Override
+            public int compare(Key k1, Key k2) {
+                return k1.getName().compareTo(k2.getName());
+            }
+        });
+        Map<Key, Integer> ordinals = new HashMap();
+        for (Key key : keys) {
+            KEYS[SIZE] = key;
+            ordinals.put(key, SIZE++);
+        }
+        ORDINALS = ordinals;
+    }
+
+    private KeyIndex() {
+    }
+
+    /**
+     * @param key key.
+     * @return key ordinal or -1 if index is full.
+     */
+    static int ordinal(Key key) {
+        Integer ordinal = ORDINALS.get(key);
+        return ordinal != null ? ordinal : register(key);
+    }
+
+    static Key key(int ordinal) {
+        return KEYS[ordinal];
+    }
+
+    /**
+     * Random like 64-bit value of an ordinal (splitmix64), XOR of these values
+     * is the hash of a {@link KeySet} and can be updated incrementally.
+     *
+     * @param ordinal key ordinal.
+     * @return ordinal hash.
+     */
+    static long hash(int ordinal) {
+        long z = (ordinal + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static synchronized int register(Key key) {
+        Integer ordinal = ORDINALS.get(key);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        if (SIZE == CAPACITY) {
+            return -1;
+        }
+        KEYS[SIZE] = key;
+        Map<Key, Integer> ordinals = new HashMap(ORDINALS);
+        ordinals.put(key, SIZE);
+        ORDINALS = ordinals;
+        return SIZE++;
+    }
+}
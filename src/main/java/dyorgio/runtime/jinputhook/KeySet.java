@@ -0,0 +1,108 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Fixed size bitset of keys indexed by {@link KeyIndex} ordinal.<br>
+ * Add/remove don't allocate, not thread-safe.
+ *
+ * @author dyorgio
+ */
+final class KeySet {
+
+    static final int WORDS = KeyIndex.CAPACITY / 64;
+
+    final long[] words = new long[WORDS];
+    private int size;
+    private long hash;
+
+    boolean add(int ordinal) {
+        long bit = 1L << ordinal;
+        int word = ordinal >>> 6;
+        if ((words[word] & bit) == 0) {
+            words[word] |= bit;
+            size++;
+            hash ^= KeyIndex.hash(ordinal);
+            return true;
+        }
+        return false;
+    }
+
+    boolean remove(int ordinal) {
+        long bit = 1L << ordinal;
+        int word = ordinal >>> 6;
+        if ((words[word] & bit) != 0) {
+            words[word] &= ~bit;
+            size--;
+            hash ^= KeyIndex.hash(ordinal);
+            return true;
+        }
+        return false;
+    }
+
+    boolean contains(int ordinal) {
+        return (words[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return XOR of {@link KeyIndex#hash(int)} of all keys.
+     */
+    long hash() {
+        return hash;
+    }
+
+    void addAll(KeySet other) {
+        for (int i = 0; i < WORDS; i++) {
+            long word = other.words[i] & ~words[i];
+            while (word != 0) {
+                add((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    boolean sameKeys(long[] otherWords) {
+        for (int i = 0; i < WORDS; i++) {
+            if (words[i] != otherWords[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return keys in ordinal order.
+     */
+    Set<Key> toKeys() {
+        Set<Key> keys = new LinkedHashSet();
+        for (int i = 0; i < WORDS; i++) {
+            long word = words[i];
+            while (word != 0) {
+                keys.add(KeyIndex.key((i << 6) + Long.numberOfTrailingZeros(word)));
+                word &= word - 1;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,96 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import dyorgio.runtime.jinputhook.source.KeyboardDevice;
+import dyorgio.runtime.jinputhook.source.KeyboardEvent;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Device read by polling core, with its pressed keys, shared by all
+ * {@link JInputHookContext}s.
+ *
+ * @author dyorgio
+ */
+final class KeyboardState {
+
+    final int id;
+    // index on contexts tables, reused after device removal (ids never are)
+    final int slot;
+    // replaced only by devices update, with poller stopped
+    KeyboardDevice device;
+    final KeySet keysPressed = new KeySet();
+    // pressed keys with modifiers replaced by class canonical key, counts of each one
+    final KeySet normalizedPressed = new KeySet();
+    private final int[] normalizedCounts = new int[KeyIndex.CAPACITY];
+    final KeyboardEvent event = new KeyboardEvent();
+    final DispatchEvent pollEvent = new DispatchEvent();
+    // only on PollingMode.PER_DEVICE
+    Thread poller;
+    // written only by polling thread
+    final AtomicLong events = new AtomicLong();
+    private long lastEvents;
+    volatile long eventsPerSecond;
+
+    KeyboardState(int id, int slot, KeyboardDevice device) {
+        this.id = id;
+        this.slot = slot;
+        this.device = device;
+    }
+
+    void press(int ordinal) {
+        if (keysPressed.add(ordinal)) {
+            int normalized = ModifierClass.canonical(ordinal);
+            if (normalizedCounts[normalized]++ == 0) {
+                normalizedPressed.add(normalized);
+            }
+        }
+    }
+
+    void release(int ordinal) {
+        if (keysPressed.remove(ordinal)) {
+            int normalized = ModifierClass.canonical(ordinal);
+            if (--normalizedCounts[normalized] == 0) {
+                normalizedPressed.remove(normalized);
+            }
+        }
+    }
+
+    /**
+     * Signals poller to stop, it must be joined without JInputHook monitor
+     * (poller may be waiting it).
+     *
+     * @return interrupted poller or <code>null</code>.
+     */
+    Thread stopPoller() {
+        Thread stopped = poller;
+        if (stopped != null) {
+            stopped.interrupt();
+            poller = null;
+        }
+        return stopped;
+    }
+
+    void updateRate() {
+        long current = events.get();
+        eventsPerSecond = current - lastEvents;
+        lastEvents = current;
+    }
+
+    String metricsName() {
+        return id + ":" + device.getName();
+    }
+}
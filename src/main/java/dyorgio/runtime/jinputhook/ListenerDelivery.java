@@ -0,0 +1,237 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One registered listener with its {@link DeliveryPolicy} and counters.
+ *
+ * @author dyorgio
+ */
+final class ListenerDelivery implements DeliveryStats {
+
+    private static final Logger LOGGER = Logger.getLogger(ListenerDelivery.class.getName());
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger(0);
+
+    static final ListenerDelivery[] EMPTY = new ListenerDelivery[0];
+
+    final Object listener;
+    final DeliveryPolicy policy;
+    /**
+     * Devices of listener, <code>null</code> for all.
+     */
+    final DeviceSelector selector;
+    final boolean dispatched;
+    private final Queue queue;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong callbackNanos = new AtomicLong();
+    private final AtomicLong maxCallbackNanos = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    ListenerDelivery(Object listener, DeliveryPolicy policy) {
+        this(listener, policy, null);
+    }
+
+    ListenerDelivery(Object listener, DeliveryPolicy policy, DeviceSelector selector) {
+        this.listener = listener;
+        this.policy = policy;
+        this.selector = selector;
+        this.dispatched = policy.getMode() == DeliveryPolicy.Mode.DISPATCHER;
+        if (policy.getMode() == DeliveryPolicy.Mode.BOUNDED || policy.getMode() == DeliveryPolicy.Mode.DROP_OLDEST) {
+            queue = new Queue(policy.getCapacity(), policy.getMode() == DeliveryPolicy.Mode.DROP_OLDEST);
+            queue.start();
+        } else {
+            queue = null;
+        }
+    }
+
+    /**
+     * Called from polling thread for non dispatched listeners.
+     */
+    void deliver(DispatchEvent event) {
+        if (queue == null) {
+            invoke(event);
+        } else {
+            queue.offer(event);
+        }
+    }
+
+    void invoke(DispatchEvent event) {
+        long start = System.nanoTime();
+        DispatchContext context = DispatchContext.enter(event, start);
+        try {
+            switch (event.type) {
+                case DispatchEvent.KEY_PRESSED:
+                    ((GlobalKeyListener) listener).keyPressed(event.key);
+                    break;
+                case DispatchEvent.KEY_RELEASED:
+                    ((GlobalKeyListener) listener).keyReleased(event.key);
+                    break;
+                case DispatchEvent.SHORTCUT:
+                case DispatchEvent.SEQUENCE:
+                    ((ShortcutListener) listener).shortcutTriggered(event.shortcut);
+                    break;
+                case DispatchEvent.BURST:
+                    ((BurstListener) listener).burstCompleted(event.burst);
+                    break;
+            }
+        } catch (Throwable t) {
+            LOGGER.log(Level.SEVERE, "Problems on listener " + listener, t);
+        } finally {
+            context.exit();
+        }
+        long elapsed = System.nanoTime() - start;
+        delivered.incrementAndGet();
+        callbackNanos.addAndGet(elapsed);
+        updateMax(maxCallbackNanos, elapsed);
+        long latency = start - event.captureNanos;
+        latencyNanos.addAndGet(latency);
+        updateMax(maxLatencyNanos, latency);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    void close() {
+        if (queue != null) {
+            queue.interrupt();
+        }
+    }
+
+    static ListenerDelivery find(ListenerDelivery[] deliveries, Object listener) {
+        for (ListenerDelivery delivery : deliveries) {
+            if (delivery.listener.equals(listener)) {
+                return delivery;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public DeliveryPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    @Override
+    public long getCallbackNanos() {
+        return callbackNanos.get();
+    }
+
+    @Override
+    public long getMaxCallbackNanos() {
+        return maxCallbackNanos.get();
+    }
+
+    @Override
+    public long getDispatchLatencyNanos() {
+        return latencyNanos.get();
+    }
+
+    @Override
+    public long getMaxDispatchLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ListenerDelivery{" + "listener=" + listener + ", policy=" + policy + '}';
+    }
+
+    /**
+     * Bounded queue of reusable slots drained by listener own thread.
+     */
+    private final class Queue extends Thread {
+
+        private final DispatchEvent[] slots;
+        private final boolean dropOldest;
+        private long head;
+        private long tail;
+
+        private Queue(int capacity, boolean dropOldest) {
+            super(null, null, "ListenerThread-" + THREAD_COUNT.incrementAndGet(), 64l * 1024l);
+            setDaemon(true);
+            this.slots = new DispatchEvent[capacity];
+            for (int i = 0; i < capacity; i++) {
+                slots[i] = new DispatchEvent();
+            }
+            this.dropOldest = dropOldest;
+        }
+
+        private synchronized void offer(DispatchEvent event) {
+            if (head - tail == slots.length) {
+                dropped.incrementAndGet();
+                if (!dropOldest) {
+                    return;
+                }
+                slots[(int) (tail++ % slots.length)].clear();
+            }
+            slots[(int) (head++ % slots.length)].set(event);
+            notify();
+        }
+
+        private synchronized int size() {
+            return (int) (head - tail);
+        }
+
+        @Override
+        public void run() {
+            DispatchEvent event = new DispatchEvent();
+            try {
+                while (!isInterrupted()) {
+                    synchronized (this) {
+                        while (head == tail) {
+                            wait();
+                        }
+                        DispatchEvent slot = slots[(int) (tail++ % slots.length)];
+                        event.set(slot);
+                        slot.clear();
+                    }
+                    invoke(event);
+                    event.clear();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link JInputHookMXBean} registered on JMX, each attribute read reads only
+ * its own counters (of default context for dispatcher and listeners), without
+ * a full snapshot or JInputHook monitor.
+ *
+ * @author dyorgio
+ */
+final class LiveMetrics implements JInputHookMXBean {
+
+    private static PollMetrics pollMetrics() {
+        return JInputHook.instance().getPollMetrics();
+    }
+
+    private static long pollCycles(long[] histogram) {
+        long cycles = 0;
+        for (long count : histogram) {
+            cycles += count;
+        }
+        return cycles;
+    }
+
+    private static long pollCyclePercentileNanos(double percentile) {
+        long[] histogram = pollMetrics().getPollCycles();
+        return JInputHookMetrics.percentileNanos(histogram, pollCycles(histogram), percentile);
+    }
+
+    @Override
+    public long getPollCycles() {
+        return pollCycles(pollMetrics().getPollCycles());
+    }
+
+    @Override
+    public long[] getPollCycleHistogram() {
+        return pollMetrics().getPollCycles();
+    }
+
+    @Override
+    public long getPollCycleP50Nanos() {
+        return pollCyclePercentileNanos(50);
+    }
+
+    @Override
+    public long getPollCycleP99Nanos() {
+        return pollCyclePercentileNanos(99);
+    }
+
+    @Override
+    public long getPollIntervalNanos() {
+        return pollMetrics().getPollIntervalNanos();
+    }
+
+    @Override
+    public long getPollFailures() {
+        return pollMetrics().getPollFailures();
+    }
+
+    @Override
+    public long getDeviceRescans() {
+        return pollMetrics().getRescans();
+    }
+
+    @Override
+    public long getDeviceRescanNanos() {
+        return pollMetrics().getRescanNanos();
+    }
+
+    @Override
+    public long getMaxDeviceRescanNanos() {
+        return pollMetrics().getMaxRescanNanos();
+    }
+
+    @Override
+    public Map<String, Long> getDeviceEvents() {
+        Map<String, Long> deviceEvents = new LinkedHashMap();
+        JInputHook.instance().collectDeviceMetrics(deviceEvents, new LinkedHashMap<String, Long>());
+        return deviceEvents;
+    }
+
+    @Override
+    public Map<String, Long> getDeviceEventsPerSecond() {
+        Map<String, Long> deviceEventsPerSecond = new LinkedHashMap();
+        JInputHook.instance().collectDeviceMetrics(new LinkedHashMap<String, Long>(), deviceEventsPerSecond);
+        return deviceEventsPerSecond;
+    }
+
+    @Override
+    public int getDispatchQueueDepth() {
+        return JInputHook.context().getDispatchQueueDepth();
+    }
+
+    @Override
+    public int getDispatchActiveThreads() {
+        return JInputHook.context().getDispatchActiveThreads();
+    }
+
+    @Override
+    public long getDispatchDroppedEvents() {
+        return JInputHook.context().getDispatchDroppedEvents();
+    }
+
+    @Override
+    public long getBatchDroppedEvents() {
+        return JInputHook.context().getBatchDroppedEvents();
+    }
+
+    @Override
+    public Map<String, Long> getListenerDelivered() {
+        Map<String, Long> listenerDelivered = new LinkedHashMap();
+        JInputHook.context().collectListenerMetrics(listenerDelivered, new LinkedHashMap<String, Long>(), new LinkedHashMap<String, Long>());
+        return listenerDelivered;
+    }
+
+    @Override
+    public Map<String, Long> getListenerCallbackNanos() {
+        Map<String, Long> listenerCallbackNanos = new LinkedHashMap();
+        JInputHook.context().collectListenerMetrics(new LinkedHashMap<String, Long>(), listenerCallbackNanos, new LinkedHashMap<String, Long>());
+        return listenerCallbackNanos;
+    }
+
+    @Override
+    public Map<String, Long> getListenerMaxCallbackNanos() {
+        Map<String, Long> listenerMaxCallbackNanos = new LinkedHashMap();
+        JInputHook.context().collectListenerMetrics(new LinkedHashMap<String, Long>(), new LinkedHashMap<String, Long>(), listenerMaxCallbackNanos);
+        return listenerMaxCallbackNanos;
+    }
+}
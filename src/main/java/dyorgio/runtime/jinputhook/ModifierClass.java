@@ -0,0 +1,108 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Modifier keys with left and right variants, a {@link Shortcut} with a
+ * modifier class matches any of its keys.
+ *
+ * @author dyorgio
+ */
+public enum ModifierClass {
+
+    CONTROL("Control", Key.LCONTROL, Key.RCONTROL),
+    SHIFT("Shift", Key.LSHIFT, Key.RSHIFT),
+    ALT("Alt", Key.LALT, Key.RALT),
+    META("Meta", Key.LWIN, Key.RWIN);
+
+    private final String displayName;
+    private final Set<Key> keys;
+    /**
+     * Keys as {@link KeySet} words.
+     */
+    final long[] mask = new long[KeySet.WORDS];
+    /**
+     * Ordinal that represents all keys of class on normalized key sets.
+     */
+    final int canonical;
+
+    private ModifierClass(String displayName, Key... keys) {
+        this.displayName = displayName;
+        this.keys = Collections.unmodifiableSet(new LinkedHashSet(Arrays.asList(keys)));
+        for (Key key : keys) {
+            int ordinal = KeyIndex.ordinal(key);
+            mask[ordinal >>> 6] |= 1L << ordinal;
+        }
+        this.canonical = KeyIndex.ordinal(keys[0]);
+    }
+
+    public Set<Key> getKeys() {
+        return keys;
+    }
+
+    boolean contains(int ordinal) {
+        return (mask[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * @param ordinal key ordinal.
+     * @return canonical ordinal of key class or same ordinal if key isn't a
+     * modifier.
+     */
+    static int canonical(int ordinal) {
+        return Canonical.ORDINALS[ordinal];
+    }
+
+    /**
+     * @param ordinal key ordinal.
+     * @return <code>true</code> if key belongs to a modifier class.
+     */
+    static boolean isModifier(int ordinal) {
+        return Canonical.ORDINALS[ordinal] != ordinal || Canonical.MODIFIERS[ordinal];
+    }
+
+    @Override
+    public String toString() {
+        return "Any " + displayName;
+    }
+
+    /**
+     * Built after enum constants.
+     */
+    private static final class Canonical {
+
+        private static final int[] ORDINALS = new int[KeyIndex.CAPACITY];
+        private static final boolean[] MODIFIERS = new boolean[KeyIndex.CAPACITY];
+
+        static {
+            for (int i = 0; i < ORDINALS.length; i++) {
+                ORDINALS[i] = i;
+            }
+            for (ModifierClass modifierClass : values()) {
+                for (Key key : modifierClass.keys) {
+                    ORDINALS[KeyIndex.ordinal(key)] = modifierClass.canonical;
+                    MODIFIERS[KeyIndex.ordinal(key)] = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent cache of bundled JInput natives.<br>
+ * Natives of a platform are extracted to a directory named by SHA-256 of
+ * their contents, so a new version never reuses old files and next starts
+ * only verify existing copies. Files are written to a temporary name and
+ * atomically moved, JVMs starting at same time never load a partial file.<br>
+ * JInput loads natives by path, so cache directories must be private: they
+ * are created with owner only permissions (POSIX) and rejected if owned by
+ * another user, so files verified from opened channels (without following
+ * links) can't be replaced before JInput loads them. An unusable cache
+ * directory (read-only, owned by another user...) is replaced by a new private
+ * temporary directory, deleted on exit.
+ *
+ * @author dyorgio
+ */
+final class NativeLibraryCache {
+
+    private static final Logger LOGGER = Logger.getLogger(NativeLibraryCache.class.getName());
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private final Path cacheDirectory;
+    private final Map<String, String> fileNames = new LinkedHashMap();
+
+    /**
+     * @param cacheDirectory root of versioned directories, <code>null</code>
+     * for {@link #defaultDirectory()}.
+     */
+    NativeLibraryCache(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory == null ? defaultDirectory() : cacheDirectory;
+    }
+
+    /**
+     * @param resource classpath resource of native.
+     * @param fileName name expected by JInput, <code>null</code> for same name
+     * of resource.
+     * @return this cache.
+     */
+    NativeLibraryCache add(String resource, String fileName) {
+        fileNames.put(resource, fileName == null ? resource.substring(resource.lastIndexOf('/') + 1) : fileName);
+        return this;
+    }
+
+    /**
+     * Extracts missing or corrupted natives.
+     *
+     * @return directory with all natives or <code>null</code> if some native
+     * isn't bundled.
+     * @throws IOException if natives cannot be read or written.
+     */
+    Path extract() throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap();
+        MessageDigest versionDigest = sha256();
+        for (Map.Entry<String, String> entry : fileNames.entrySet()) {
+            byte[] content = read(entry.getKey());
+            if (content == null) {
+                return null;
+            }
+            contents.put(entry.getValue(), content);
+            versionDigest.update(entry.getValue().getBytes("UTF-8"));
+            versionDigest.update(content);
+        }
+        String version = hex(versionDigest.digest(), 16);
+        try {
+            return extract(cacheDirectory, version, contents);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Cannot use native cache directory " + cacheDirectory + ", using a temporary directory.", ex);
+        }
+        Path tmpDirectory = createPrivateTempDirectory();
+        tmpDirectory.toFile().deleteOnExit();
+        Path directory = extract(tmpDirectory, version, contents);
+        directory.toFile().deleteOnExit();
+        for (String fileName : contents.keySet()) {
+            directory.resolve(fileName).toFile().deleteOnExit();
+        }
+        return directory;
+    }
+
+    private static Path extract(Path cacheDirectory, String version, Map<String, byte[]> contents) throws IOException {
+        Path directory = cacheDirectory.resolve(version);
+        createPrivateDirectory(cacheDirectory);
+        createPrivateDirectory(directory);
+        for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+            Path file = directory.resolve(entry.getKey());
+            byte[] expected = sha256().digest(entry.getValue());
+            if (!isValid(file, expected)) {
+                write(file, entry.getValue(), expected);
+            }
+        }
+        return directory;
+    }
+
+    private static Path createPrivateTempDirectory() throws IOException {
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return Files.createTempDirectory("jinputhook-natives", PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        return Files.createTempDirectory("jinputhook-natives");
+    }
+
+    private static void write(Path file, byte[] content, byte[] expected) throws IOException {
+        Path tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmpFile, content);
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            // another JVM may have written (and loaded, locked on Windows) same file
+            if (!isValid(file, expected)) {
+                throw ex;
+            }
+            LOGGER.log(Level.FINE, "Native already extracted by another process: " + file, ex);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Creates directory (and missing parents) with owner only permissions, an
+     * existing directory must be owned by current user, its group and others
+     * permissions are removed.
+     */
+    private static void createPrivateDirectory(Path directory) throws IOException {
+        PosixFileAttributeView posixView = Files.getFileAttributeView(directory, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (posixView != null) {
+            if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            }
+            PosixFileAttributes attributes = posixView.readAttributes();
+            if (!attributes.isDirectory()) {
+                throw new IOException("Native cache is not a directory: " + directory);
+            }
+            checkOwner(directory, attributes.owner());
+            if (!OWNER_ONLY.containsAll(attributes.permissions())) {
+                Set<PosixFilePermission> permissions = EnumSet.copyOf(attributes.permissions());
+                permissions.retainAll(OWNER_ONLY);
+                posixView.setPermissions(permissions);
+            }
+        } else {
+            // Windows: default directory is private by ACL inheritance
+            // (owner is Administrators group on elevated processes)
+            Files.createDirectories(directory);
+            if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                throw new IOException("Native cache is not a directory: " + directory);
+            }
+        }
+    }
+
+    /**
+     * Compares directory owner with owner of a file created on it, user name
+     * may not resolve to a principal (like UIDs without passwd entry).
+     */
+    private static void checkOwner(Path directory, UserPrincipal owner) throws IOException {
+        Path probe = Files.createTempFile(directory, "owner", ".tmp");
+        UserPrincipal user;
+        try {
+            user = Files.getOwner(probe, LinkOption.NOFOLLOW_LINKS);
+        } finally {
+            Files.delete(probe);
+        }
+        if (!user.equals(owner)) {
+            throw new IOException("Native cache directory " + directory + " is owned by " + owner.getName() + ", not by " + user.getName() + ".");
+        }
+    }
+
+    /**
+     * Reads file from an opened channel (links aren't followed), what is
+     * verified is what was opened.
+     */
+    private static boolean isValid(Path file, byte[] expected) throws IOException {
+        MessageDigest digest = sha256();
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException ex) {
+            // missing, link (ELOOP), directory or unreadable file, replaced by a private copy
+            LOGGER.log(Level.FINE, "Cannot verify native " + file, ex);
+            return false;
+        }
+        return Arrays.equals(expected, digest.digest());
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream inputStream = NativeLibraryCache.class.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                return null;
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] array = new byte[8192];
+            for (int i = inputStream.read(array); i != -1; i = inputStream.read(array)) {
+                outputStream.write(array, 0, i);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String hex(byte[] bytes, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return <code>jinputhook/natives</code> on user cache directory
+     * (<code>%LOCALAPPDATA%</code> on Windows, <code>~/Library/Caches</code>
+     * on macOS, <code>$XDG_CACHE_HOME</code> or <code>~/.cache</code> on
+     * others), never a directory shared with other users.
+     */
+    static Path defaultDirectory() {
+        Path home = Paths.get(System.getProperty("user.home"));
+        Path cache;
+        if (OSDetector.isWindows()) {
+            String localAppData = System.getenv("LOCALAPPDATA");
+            cache = localAppData == null || localAppData.isEmpty() ? home.resolve("AppData").resolve("Local") : Paths.get(localAppData);
+        } else if (OSDetector.isMac()) {
+            cache = home.resolve("Library").resolve("Caches");
+        } else {
+            String xdgCache = System.getenv("XDG_CACHE_HOME");
+            cache = xdgCache == null || !Paths.get(xdgCache).isAbsolute() ? home.resolve(".cache") : Paths.get(xdgCache);
+        }
+        return cache.resolve("jinputhook").resolve("natives");
+    }
+}
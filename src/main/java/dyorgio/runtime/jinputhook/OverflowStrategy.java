@@ -0,0 +1,38 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * What an event stream does when its bounded buffer is full because
+ * subscriber didn't request more events.
+ *
+ * @author dyorgio
+ */
+public enum OverflowStrategy {
+
+    /**
+     * New events are dropped.
+     */
+    DROP_LATEST,
+    /**
+     * Oldest buffered event is dropped.
+     */
+    DROP_OLDEST,
+    /**
+     * Stream fails with an error and is cancelled.
+     */
+    ERROR
+}
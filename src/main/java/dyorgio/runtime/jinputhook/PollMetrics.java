@@ -0,0 +1,121 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Poll loop and device rescan counters.<br>
+ * On {@link PollingMode#SHARED} mode each counter has a single writer
+ * (polling thread, or rescans serialized by JInputHook monitor), so updates
+ * are plain ordered writes without locks or CAS, readers see them through
+ * atomic reads. On {@link PollingMode#PER_DEVICE} mode poll counters are
+ * updated with atomic adds.
+ *
+ * @author dyorgio
+ */
+final class PollMetrics {
+
+    /**
+     * Bucket <code>i</code> counts cycles with duration in
+     * <code>[2^(i-1), 2^i)</code> nanoseconds, last bucket counts the rest.
+     */
+    static final int HISTOGRAM_BUCKETS = 40;
+
+    private final AtomicLongArray pollCycles = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLong pollFailures = new AtomicLong();
+    private final AtomicLong pollIntervalNanos = new AtomicLong();
+    private final AtomicLong rescans = new AtomicLong();
+    private final AtomicLong rescanNanos = new AtomicLong();
+    private final AtomicLong maxRescanNanos = new AtomicLong();
+    private final boolean concurrent;
+
+    PollMetrics(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    static int bucket(long nanos) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)), HISTOGRAM_BUCKETS - 1);
+    }
+
+    static void increment(AtomicLong counter) {
+        counter.lazySet(counter.get() + 1);
+    }
+
+    void recordPollCycle(long nanos) {
+        int bucket = bucket(nanos);
+        if (concurrent) {
+            pollCycles.incrementAndGet(bucket);
+        } else {
+            pollCycles.lazySet(bucket, pollCycles.get(bucket) + 1);
+        }
+    }
+
+    /**
+     * @param nanos time between last two cycles start, averaged with previous
+     * values (EWMA, 1/8 weight).
+     */
+    void recordPollInterval(long nanos) {
+        // concurrent updates may lose a sample, acceptable for an average
+        long average = pollIntervalNanos.get();
+        pollIntervalNanos.lazySet(average == 0 ? nanos : average + (nanos - average) / 8);
+    }
+
+    void recordPollFailure() {
+        if (concurrent) {
+            pollFailures.incrementAndGet();
+        } else {
+            increment(pollFailures);
+        }
+    }
+
+    void recordRescan(long nanos) {
+        increment(rescans);
+        rescanNanos.lazySet(rescanNanos.get() + nanos);
+        if (nanos > maxRescanNanos.get()) {
+            maxRescanNanos.lazySet(nanos);
+        }
+    }
+
+    long[] getPollCycles() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = pollCycles.get(i);
+        }
+        return histogram;
+    }
+
+    long getPollIntervalNanos() {
+        return pollIntervalNanos.get();
+    }
+
+    long getPollFailures() {
+        return pollFailures.get();
+    }
+
+    long getRescans() {
+        return rescans.get();
+    }
+
+    long getRescanNanos() {
+        return rescanNanos.get();
+    }
+
+    long getMaxRescanNanos() {
+        return maxRescanNanos.get();
+    }
+}
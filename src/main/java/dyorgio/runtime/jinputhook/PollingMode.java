@@ -0,0 +1,38 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * How keyboards are polled.
+ *
+ * @author dyorgio
+ */
+public enum PollingMode {
+
+    /**
+     * One thread polls all keyboards in sequence, device updates wait the end
+     * of current poll cycle.
+     */
+    SHARED,
+    /**
+     * Each keyboard has its own polling thread and scheduler (created from
+     * {@link JInputHookOptions#getPollingProfile()}), without any shared lock.
+     * A slow device or a device update doesn't delay other keyboards.<br>
+     * {@link DeliveryPolicy#synchronous()} listeners may be called
+     * concurrently by different keyboards threads.
+     */
+    PER_DEVICE
+}
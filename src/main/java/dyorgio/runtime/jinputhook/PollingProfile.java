@@ -0,0 +1,58 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * Predefined {@link BackoffPollingScheduler} settings.
+ *
+ * @author dyorgio
+ */
+public enum PollingProfile {
+
+    /**
+     * Spins and yields for a while after activity and parks at most 1ms,
+     * lowest lag with highest CPU usage.
+     */
+    LOW_LATENCY(2000, 2000, 50000L, 1000000L),
+    /**
+     * Short spin after activity and parks up to 10ms when idle.
+     */
+    BALANCED(100, 100, 1000000L, 10000000L),
+    /**
+     * Never spins, parks up to 50ms when idle, lowest CPU usage (laptops on
+     * battery).
+     */
+    POWER_SAVER(0, 0, 5000000L, 50000000L);
+
+    private final int spinCycles;
+    private final int yieldCycles;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    private PollingProfile(int spinCycles, int yieldCycles, long minParkNanos, long maxParkNanos) {
+        this.spinCycles = spinCycles;
+        this.yieldCycles = yieldCycles;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    /**
+     * @return new scheduler with this profile settings.
+     */
+    public PollingScheduler createScheduler() {
+        return new BackoffPollingScheduler(spinCycles, yieldCycles, minParkNanos, maxParkNanos);
+    }
+}
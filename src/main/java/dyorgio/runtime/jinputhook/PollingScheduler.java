@@ -0,0 +1,37 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+/**
+ * Decides how polling thread waits between poll cycles.<br>
+ * Called only by polling thread, implementations don't need to be
+ * thread-safe but must not be shared between JInputHook instances.
+ *
+ * @author dyorgio
+ * @see PollingProfile
+ * @see BackoffPollingScheduler
+ */
+public interface PollingScheduler {
+
+    /**
+     * Called after each poll cycle, outside of devices lock, returns when
+     * next cycle must start.
+     *
+     * @param active <code>true</code> if cycle read at least one event.
+     * @throws InterruptedException if polling thread was interrupted.
+     */
+    void awaitNextCycle(boolean active) throws InterruptedException;
+}
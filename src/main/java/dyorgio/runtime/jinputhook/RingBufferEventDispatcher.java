@@ -0,0 +1,278 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fixed threads, each one draining its own preallocated ring of reusable
+ * events. A device is always routed to the same ring, so its
+ * events are delivered in order.<br>
+ * When a ring is full polling thread waits up to {@link #FULL_WAIT_NANOS},
+ * then events of that ring are dropped until it has free slots, so a slow
+ * listener doesn't stop polling. Key events are dropped in pairs: a release
+ * of a dropped press is dropped too, a release of a delivered press is kept
+ * apart (at most one per held key) and delivered by ring thread once ring is
+ * empty, new events are dropped meanwhile, so listeners never see a stuck
+ * key. No thread is created on bursts.
+ *
+ * @author dyorgio
+ */
+final class RingBufferEventDispatcher extends EventDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(RingBufferEventDispatcher.class.getName());
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    static final long FULL_WAIT_NANOS = 10000000L;
+
+    private final Ring[] rings;
+    private final boolean multiProducer;
+    private volatile boolean closed;
+
+    /**
+     * @param multiProducer <code>true</code> if several polling threads
+     * dispatch events ({@link PollingMode#PER_DEVICE}), producers of the same
+     * ring are serialized by ring monitor.
+     */
+    RingBufferEventDispatcher(Handler handler, int threads, int ringSize, boolean multiProducer) {
+        super(handler);
+        this.multiProducer = multiProducer;
+        rings = new Ring[threads];
+        for (int i = 0; i < threads; i++) {
+            rings[i] = new Ring(ringSize);
+            rings[i].thread = THREAD_FACTORY.newThread(rings[i]);
+            rings[i].thread.start();
+        }
+    }
+
+    @Override
+    void dispatch(DispatchEvent event) {
+        if (closed) {
+            return;
+        }
+        Ring ring = rings[(event.device & Integer.MAX_VALUE) % rings.length];
+        if (multiProducer) {
+            synchronized (ring) {
+                publish(ring, event);
+            }
+        } else {
+            publish(ring, event);
+        }
+    }
+
+    private void publish(Ring ring, DispatchEvent event) {
+        if (ring.pendingCount != 0) {
+            synchronized (ring.pendingReleases) {
+                if (!ring.pendingReleases.isEmpty()) {
+                    // ring thread didn't deliver kept releases yet
+                    drop(ring, event);
+                    return;
+                }
+            }
+        }
+        if (event.type == DispatchEvent.KEY_RELEASED && !ring.droppedPresses.isEmpty()
+                && ring.droppedPresses.remove(keyOf(event))) {
+            ring.dropped++;
+            return;
+        }
+        long index = ring.head.get();
+        int tries = 0;
+        long deadline = 0;
+        while (index - ring.tail.get() == ring.slots.length) {
+            // full, wait consumer
+            if (ring.overflowing || closed) {
+                drop(ring, event);
+                return;
+            }
+            if (++tries < SPIN_TRIES) {
+                // spin
+            } else if (tries < YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                if (deadline == 0) {
+                    deadline = System.nanoTime() + FULL_WAIT_NANOS;
+                } else if (System.nanoTime() - deadline > 0) {
+                    ring.overflowing = true;
+                    drop(ring, event);
+                    LOGGER.log(Level.WARNING, "Dispatch ring full, dropping events until listeners catch up ({0} dropped so far).", ring.dropped);
+                    return;
+                }
+                LockSupport.parkNanos(100000L);
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        }
+        ring.overflowing = false;
+        put(ring, index, event);
+    }
+
+    private void put(Ring ring, long index, DispatchEvent event) {
+        ring.slots[(int) index & ring.mask].set(event);
+        ring.head.set(index + 1);
+        if (ring.parked) {
+            LockSupport.unpark(ring.thread);
+        }
+    }
+
+    /**
+     * Drops an event of a full ring, releases of delivered presses are kept.
+     */
+    private void drop(Ring ring, DispatchEvent event) {
+        if (event.type == DispatchEvent.KEY_PRESSED) {
+            ring.droppedPresses.add(keyOf(event));
+        } else if (event.type == DispatchEvent.KEY_RELEASED && !ring.droppedPresses.remove(keyOf(event)) && !closed) {
+            DispatchEvent release = new DispatchEvent();
+            release.set(event);
+            synchronized (ring.pendingReleases) {
+                ring.pendingReleases.add(release);
+                ring.pendingCount = ring.pendingReleases.size();
+            }
+            if (ring.parked) {
+                LockSupport.unpark(ring.thread);
+            }
+            return;
+        }
+        ring.dropped++;
+    }
+
+    private static long keyOf(DispatchEvent event) {
+        return ((long) event.device << 32) | (KeyIndex.ordinal(event.key) & 0xFFFFFFFFL);
+    }
+
+    @Override
+    int getQueueDepth() {
+        long depth = 0;
+        for (Ring ring : rings) {
+            depth += ring.head.get() - ring.tail.get();
+        }
+        return (int) depth;
+    }
+
+    @Override
+    int getActiveThreads() {
+        int active = 0;
+        for (Ring ring : rings) {
+            if (ring.head.get() != ring.tail.get()) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    @Override
+    long getDroppedEvents() {
+        long dropped = 0;
+        for (Ring ring : rings) {
+            dropped += ring.dropped;
+        }
+        return dropped;
+    }
+
+    @Override
+    void shutdown() {
+        closed = true;
+        for (Ring ring : rings) {
+            ring.thread.interrupt();
+        }
+    }
+
+    private final class Ring implements Runnable {
+
+        private final DispatchEvent[] slots;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        private volatile boolean parked;
+        private Thread thread;
+        // written only by producers, serialized on multi producer mode
+        private boolean overflowing;
+        private volatile long dropped;
+        // releases of delivered presses dropped from full ring, in order
+        private final List<DispatchEvent> pendingReleases = new ArrayList();
+        private volatile int pendingCount;
+        // device and key of dropped presses, their releases are dropped too
+        private final Set<Long> droppedPresses = new HashSet();
+
+        private Ring(int size) {
+            slots = new DispatchEvent[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = new DispatchEvent();
+            }
+            mask = size - 1;
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                long index = tail.get();
+                if (index < head.get()) {
+                    DispatchEvent event = slots[(int) index & mask];
+                    try {
+                        handler.handle(event);
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.SEVERE, "Problems on listener", t);
+                    }
+                    event.clear();
+                    tail.lazySet(index + 1);
+                    idle = 0;
+                } else if (pendingCount != 0) {
+                    // producers don't publish while releases are kept
+                    deliverPendingReleases();
+                    idle = 0;
+                } else if (++idle < SPIN_TRIES) {
+                    // spin
+                } else if (idle < YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    parked = true;
+                    if (index == head.get() && pendingCount == 0) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                }
+            }
+        }
+
+        private void deliverPendingReleases() {
+            List<DispatchEvent> releases;
+            synchronized (pendingReleases) {
+                releases = new ArrayList(pendingReleases);
+            }
+            for (DispatchEvent event : releases) {
+                try {
+                    handler.handle(event);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.SEVERE, "Problems on listener", t);
+                }
+            }
+            synchronized (pendingReleases) {
+                // producers only add while list isn't empty
+                pendingReleases.subList(0, releases.size()).clear();
+                pendingCount = pendingReleases.size();
+            }
+        }
+    }
+}
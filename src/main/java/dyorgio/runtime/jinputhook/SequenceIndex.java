@@ -0,0 +1,200 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable trie of registered {@link ShortcutSequence}s, shared by all
+ * devices.<br>
+ * Each device keeps its current nodes, a step is matched by a lookup on
+ * current nodes children with normalized pressed keys hash (same of
+ * {@link ShortcutIndex}), so each key transition costs the same whatever
+ * registered sequences count. Steps with exact and class modifiers (like
+ * <code>LCONTROL+K</code> and <code>CONTROL+K</code>) may match the same
+ * pressed keys, all of them are followed. Changes create a new index.
+ *
+ * @author dyorgio
+ */
+final class SequenceIndex {
+
+    static final SequenceIndex EMPTY = new SequenceIndex(new Entry[0]);
+
+    private final Entry[] entries;
+    final Node root;
+
+    private SequenceIndex(Entry[] entries) {
+        this.entries = entries;
+        Builder rootBuilder = new Builder(null, 0);
+        for (Entry entry : entries) {
+            Builder builder = rootBuilder;
+            for (int i = 0; i < entry.sequence.size(); i++) {
+                Shortcut step = entry.sequence.getStep(i);
+                Builder child = builder.children.get(step);
+                if (child == null) {
+                    child = new Builder(step, 0);
+                    builder.children.put(step, child);
+                }
+                // shared prefixes accept the longest timeout
+                child.timeoutNanos = Math.max(child.timeoutNanos, TimeUnit.MILLISECONDS.toNanos(entry.sequence.getStepTimeoutMillis(i)));
+                builder = child;
+            }
+            builder.entry = entry;
+        }
+        this.root = rootBuilder.build(this);
+    }
+
+    boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    Entry[] entries() {
+        return entries;
+    }
+
+    Entry get(ShortcutSequence sequence) {
+        for (Entry entry : entries) {
+            if (entry.sequence.equals(sequence)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    SequenceIndex with(Entry entry) {
+        Entry[] newEntries = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, newEntries, 0, entries.length);
+        newEntries[entries.length] = entry;
+        return new SequenceIndex(newEntries);
+    }
+
+    SequenceIndex without(Set<Entry> toRemove) {
+        List<Entry> newEntries = new ArrayList();
+        for (Entry entry : entries) {
+            if (!toRemove.contains(entry)) {
+                newEntries.add(entry);
+            }
+        }
+        if (newEntries.size() == entries.length) {
+            return this;
+        }
+        return new SequenceIndex(newEntries.toArray(new Entry[newEntries.size()]));
+    }
+
+    /**
+     * Trie node, a step pressed after its parent.
+     */
+    static final class Node {
+
+        final SequenceIndex index;
+        final Shortcut step;
+        /**
+         * Max time since parent step, 0 on root.
+         */
+        final long timeoutNanos;
+        /**
+         * Sequence ending on this node or <code>null</code>.
+         */
+        final Entry entry;
+        private final long[] hashes;
+        private final Node[] slots;
+        private final int slotMask;
+        final boolean leaf;
+
+        private Node(SequenceIndex index, Shortcut step, long timeoutNanos, Entry entry, List<Node> children) {
+            this.index = index;
+            this.step = step;
+            this.timeoutNanos = timeoutNanos;
+            this.entry = entry;
+            int capacity = 2;
+            while (capacity < children.size() * 2) {
+                capacity <<= 1;
+            }
+            this.hashes = new long[capacity];
+            this.slots = new Node[capacity];
+            this.slotMask = capacity - 1;
+            for (Node child : children) {
+                int slot = (int) child.step.normalizedHash & slotMask;
+                while (slots[slot] != null) {
+                    slot = (slot + 1) & slotMask;
+                }
+                hashes[slot] = child.step.normalizedHash;
+                slots[slot] = child;
+            }
+            this.leaf = children.isEmpty();
+        }
+
+        /**
+         * @param keysPressed current pressed keys.
+         * @param normalizedPressed current pressed keys, with modifiers
+         * replaced by {@link ModifierClass#canonical(int)}.
+         * @param elapsedNanos time since this node step, ignored on root.
+         * @param matched receives children matched by pressed keys.
+         */
+        void next(KeySet keysPressed, KeySet normalizedPressed, long elapsedNanos, List<Node> matched) {
+            long hash = normalizedPressed.hash();
+            for (int slot = (int) hash & slotMask; slots[slot] != null; slot = (slot + 1) & slotMask) {
+                Node child = slots[slot];
+                if (hashes[slot] == hash && normalizedPressed.sameKeys(child.step.normalizedMask) && child.step.matches(keysPressed)
+                        && (step == null || elapsedNanos <= child.timeoutNanos)) {
+                    matched.add(child);
+                }
+            }
+        }
+    }
+
+    private static final class Builder {
+
+        private final Shortcut step;
+        private long timeoutNanos;
+        private Entry entry;
+        private final Map<Shortcut, Builder> children = new LinkedHashMap();
+
+        private Builder(Shortcut step, long timeoutNanos) {
+            this.step = step;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        private Node build(SequenceIndex index) {
+            List<Node> nodes = new ArrayList();
+            for (Builder child : children.values()) {
+                nodes.add(child.build(index));
+            }
+            return new Node(index, step, timeoutNanos, entry, nodes);
+        }
+    }
+
+    /**
+     * Registered sequence, first registered instance is the canonical one.
+     */
+    static final class Entry {
+
+        final ShortcutSequence sequence;
+        /**
+         * Immutable snapshot, replaced on changes.
+         */
+        volatile ListenerDelivery[] listeners = ListenerDelivery.EMPTY;
+
+        Entry(ShortcutSequence sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
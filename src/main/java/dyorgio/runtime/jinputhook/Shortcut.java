@@ -15,45 +15,136 @@
  ***************************************************************************** */
 package dyorgio.runtime.jinputhook;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
 import net.java.games.input.Component.Identifier.Key;
 
 /**
+ * Keys pressed at the same time. Modifier classes (like
+ * {@link ModifierClass#CONTROL}) match any of their keys, so one shortcut
+ * covers left and right variants.
  *
  * @author dyorgio
  */
 public final class Shortcut {
 
+    private static final ModifierClass[] NO_CLASSES = new ModifierClass[0];
+
     private final Set<Key> keys = new LinkedHashSet();
+    private final Set<ModifierClass> modifierClasses;
+    /**
+     * Required keys as {@link KeySet} words (modifier classes excluded).
+     */
+    final long[] mask = new long[KeySet.WORDS];
+    /**
+     * Keys of modifier classes, any of them per class.
+     */
+    final long[] alternatives = new long[KeySet.WORDS];
+    private final ModifierClass[] classes;
+    /**
+     * Keys with modifiers replaced by their canonical class key, compared
+     * against normalized pressed keys.
+     */
+    final long[] normalizedMask = new long[KeySet.WORDS];
+    /**
+     * Same value of {@link KeySet#hash()} when normalized pressed keys match.
+     */
+    final long normalizedHash;
+    private final int hashCode;
 
     public Shortcut(Set<Key> keys) {
-        if (keys == null || keys.size() < 2) {
+        this(Collections.<ModifierClass>emptySet(), keys);
+    }
+
+    /**
+     * @param modifierClasses modifiers that match any of their keys.
+     * @param keys exact keys, not from given modifier classes.
+     */
+    public Shortcut(Set<ModifierClass> modifierClasses, Set<Key> keys) {
+        if (modifierClasses == null || modifierClasses.contains(null)) {
+            throw new IllegalArgumentException("Modifier classes cannot be null.");
+        }
+        if (keys == null || keys.size() + modifierClasses.size() < 2) {
             throw new IllegalArgumentException("Shortcut must have 2 or more keys.");
         } else if (keys.contains(null)) {
             throw new IllegalArgumentException("Shortcut must have 2 or more keys.");
         }
 
-        Key[] keysList = keys.toArray(new Key[0]);
+        KeySet keySet = new KeySet();
+        KeySet normalized = new KeySet();
+        for (Key key : keys) {
+            int ordinal = KeyIndex.ordinal(key);
+            if (ordinal == -1) {
+                throw new IllegalArgumentException("Too many distinct keys, cannot index " + key + ".");
+            }
+            for (ModifierClass modifierClass : modifierClasses) {
+                if (modifierClass.contains(ordinal)) {
+                    throw new IllegalArgumentException(key + " already matched by " + modifierClass + ".");
+                }
+            }
+            keySet.add(ordinal);
+            normalized.add(ModifierClass.canonical(ordinal));
+        }
+        for (ModifierClass modifierClass : modifierClasses) {
+            for (int i = 0; i < KeySet.WORDS; i++) {
+                alternatives[i] |= modifierClass.mask[i];
+            }
+            normalized.add(modifierClass.canonical);
+        }
+        System.arraycopy(keySet.words, 0, mask, 0, mask.length);
+        System.arraycopy(normalized.words, 0, normalizedMask, 0, normalizedMask.length);
+        normalizedHash = normalized.hash();
+        // ordinals are sorted by key name
+        this.keys.addAll(keySet.toKeys());
+        this.modifierClasses = modifierClasses.isEmpty() ? Collections.<ModifierClass>emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(modifierClasses));
+        this.classes = this.modifierClasses.toArray(NO_CLASSES);
+        this.hashCode = this.keys.hashCode() * 31 + this.modifierClasses.hashCode();
+    }
 
-        Arrays.sort(keysList, new Comparator<Key>() {
-            @Override
-            public int compare(Key k1, Key k2) {
-                return k1.getName().compareTo(k2.getName());
+    /**
+     * @return exact keys.
+     */
+    public Set<Key> getKeys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    public Set<ModifierClass> getModifierClasses() {
+        return modifierClasses;
+    }
+
+    /**
+     * @param pressed pressed keys, with same normalized keys of this shortcut.
+     * @return <code>true</code> if pressed keys are required keys plus one or
+     * more keys of each modifier class.
+     */
+    boolean matches(KeySet pressed) {
+        for (int i = 0; i < KeySet.WORDS; i++) {
+            if ((pressed.words[i] & ~alternatives[i]) != mask[i]) {
+                return false;
+            }
+        }
+        for (ModifierClass modifierClass : classes) {
+            boolean any = false;
+            for (int i = 0; i < KeySet.WORDS && !any; i++) {
+                any = (pressed.words[i] & modifierClass.mask[i]) != 0;
             }
-        });
-        this.keys.addAll(Arrays.asList(keysList));
+            if (!any) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(this.keys);
+        return hashCode;
     }
 
     @Override
@@ -67,12 +158,17 @@ public final class Shortcut {
         if (getClass() != obj.getClass()) {
             return false;
         }
-        return Objects.equals(this.keys, ((Shortcut) obj).keys);
+        return Arrays.equals(this.mask, ((Shortcut) obj).mask) && Arrays.equals(this.alternatives, ((Shortcut) obj).alternatives);
     }
 
     @Override
     public String toString() {
-        return keys.toString();
+        if (classes.length == 0) {
+            return keys.toString();
+        }
+        List<Object> all = new ArrayList<Object>(modifierClasses);
+        all.addAll(keys);
+        return all.toString();
     }
 
     public static Shortcut fromKeys(Collection<Key> keys) {
@@ -82,4 +178,16 @@ public final class Shortcut {
     public static Shortcut fromKeys(Key... keys) {
         return new Shortcut(new HashSet(Arrays.asList(keys)));
     }
+
+    /**
+     * Shortcut like <code>fromKeys(EnumSet.of(CONTROL, SHIFT), Key.D)</code>,
+     * matched with any Control and any Shift.
+     *
+     * @param modifierClasses modifiers that match any of their keys.
+     * @param keys exact keys.
+     * @return shortcut.
+     */
+    public static Shortcut fromKeys(Set<ModifierClass> modifierClasses, Key... keys) {
+        return new Shortcut(modifierClasses, new HashSet(Arrays.asList(keys)));
+    }
 }
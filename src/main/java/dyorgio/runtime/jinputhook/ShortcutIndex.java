@@ -0,0 +1,146 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Immutable open addressing table of registered shortcuts keyed by
+ * {@link Shortcut#normalizedHash}.<br>
+ * Shortcuts with same normalized keys (like <code>LCONTROL+D</code>,
+ * <code>RCONTROL+D</code> and <code>Any Control+D</code>) share a slot, one
+ * lookup of normalized pressed keys finds all candidates, then each one is
+ * checked with {@link Shortcut#matches(KeySet)}. Lookup is done with
+ * primitive hash and mask comparison, without any allocation. Changes create
+ * a new index.
+ *
+ * @author dyorgio
+ */
+final class ShortcutIndex {
+
+    static final ShortcutIndex EMPTY = new ShortcutIndex(new Entry[0]);
+
+    private final Entry[] entries;
+    private final long[] hashes;
+    private final Entry[][] slots;
+    private final int slotMask;
+
+    private ShortcutIndex(Entry[] entries) {
+        this.entries = entries;
+        int capacity = 16;
+        while (capacity < entries.length * 2) {
+            capacity <<= 1;
+        }
+        this.hashes = new long[capacity];
+        this.slots = new Entry[capacity][];
+        this.slotMask = capacity - 1;
+        for (Entry entry : entries) {
+            Shortcut shortcut = entry.shortcut;
+            int slot = (int) shortcut.normalizedHash & slotMask;
+            while (slots[slot] != null && !(hashes[slot] == shortcut.normalizedHash && Arrays.equals(slots[slot][0].shortcut.normalizedMask, shortcut.normalizedMask))) {
+                slot = (slot + 1) & slotMask;
+            }
+            hashes[slot] = shortcut.normalizedHash;
+            slots[slot] = slots[slot] == null ? new Entry[]{entry} : Snapshots.add(slots[slot], entry);
+        }
+    }
+
+    boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    Entry[] entries() {
+        return entries;
+    }
+
+    /**
+     * @param normalizedPressed current pressed keys, with modifiers replaced
+     * by {@link ModifierClass#canonical(int)}.
+     * @return entries that may match pressed keys or <code>null</code>.
+     */
+    Entry[] candidates(KeySet normalizedPressed) {
+        long hash = normalizedPressed.hash();
+        for (int slot = (int) hash & slotMask; slots[slot] != null; slot = (slot + 1) & slotMask) {
+            if (hashes[slot] == hash && normalizedPressed.sameKeys(slots[slot][0].shortcut.normalizedMask)) {
+                return slots[slot];
+            }
+        }
+        return null;
+    }
+
+    Entry get(Shortcut shortcut) {
+        long hash = shortcut.normalizedHash;
+        for (int slot = (int) hash & slotMask; slots[slot] != null; slot = (slot + 1) & slotMask) {
+            if (hashes[slot] == hash) {
+                for (Entry entry : slots[slot]) {
+                    if (entry.shortcut.equals(shortcut)) {
+                        return entry;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    ShortcutIndex with(Entry entry) {
+        Entry[] newEntries = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, newEntries, 0, entries.length);
+        newEntries[entries.length] = entry;
+        return new ShortcutIndex(newEntries);
+    }
+
+    ShortcutIndex without(Set<Entry> toRemove) {
+        Entry[] newEntries = new Entry[entries.length];
+        int size = 0;
+        for (Entry entry : entries) {
+            if (!toRemove.contains(entry)) {
+                newEntries[size++] = entry;
+            }
+        }
+        if (size == entries.length) {
+            return this;
+        }
+        Entry[] trimmed = new Entry[size];
+        System.arraycopy(newEntries, 0, trimmed, 0, size);
+        return new ShortcutIndex(trimmed);
+    }
+
+    /**
+     * Registered shortcut, first registered instance is the canonical one
+     * delivered to listeners.
+     */
+    static final class Entry {
+
+        final Shortcut shortcut;
+        /**
+         * Immutable snapshot, replaced on changes.
+         */
+        volatile DeviceListeners listeners = DeviceListeners.EMPTY;
+        /**
+         * Immutable snapshot, replaced on changes.
+         */
+        volatile EventStream[] streams = EventStream.EMPTY;
+
+        Entry(Shortcut shortcut) {
+            this.shortcut = shortcut;
+        }
+
+        boolean isUnused() {
+            return listeners.isEmpty() && streams.length == 0;
+        }
+    }
+}
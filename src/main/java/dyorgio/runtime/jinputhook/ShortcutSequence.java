@@ -0,0 +1,125 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shortcuts pressed one after another, like <code>Ctrl+K, Ctrl+C</code>.<br>
+ * Each step must be pressed before its timeout, counted from previous step.
+ * Sequences with same steps are equal, whatever their timeouts.
+ *
+ * @author dyorgio
+ */
+public final class ShortcutSequence {
+
+    public static final long DEFAULT_STEP_TIMEOUT_MILLIS = 1500;
+
+    private final Shortcut[] steps;
+    /**
+     * Timeout of step <code>i</code> on index <code>i</code>, first is
+     * always 0.
+     */
+    private final long[] stepTimeoutsMillis;
+    private final int hashCode;
+
+    /**
+     * @param steps shortcuts in order, 2 or more.
+     * @param stepTimeoutMillis max time between two steps.
+     */
+    public ShortcutSequence(List<Shortcut> steps, long stepTimeoutMillis) {
+        this(steps, repeat(steps, stepTimeoutMillis));
+    }
+
+    /**
+     * @param steps shortcuts in order, 2 or more.
+     * @param stepTimeoutsMillis max time between each step and the previous
+     * one, one per step after first.
+     */
+    public ShortcutSequence(List<Shortcut> steps, long[] stepTimeoutsMillis) {
+        if (steps == null || steps.size() < 2 || steps.contains(null)) {
+            throw new IllegalArgumentException("Shortcut sequence must have 2 or more shortcuts.");
+        }
+        if (stepTimeoutsMillis == null || stepTimeoutsMillis.length != steps.size() - 1) {
+            throw new IllegalArgumentException("Shortcut sequence must have one timeout per step after first.");
+        }
+        this.steps = steps.toArray(new Shortcut[steps.size()]);
+        this.stepTimeoutsMillis = new long[this.steps.length];
+        for (int i = 0; i < stepTimeoutsMillis.length; i++) {
+            if (stepTimeoutsMillis[i] <= 0) {
+                throw new IllegalArgumentException("Step timeout must be positive.");
+            }
+            this.stepTimeoutsMillis[i + 1] = stepTimeoutsMillis[i];
+        }
+        this.hashCode = Arrays.hashCode(this.steps);
+    }
+
+    private static long[] repeat(List<Shortcut> steps, long stepTimeoutMillis) {
+        long[] timeouts = new long[steps == null || steps.size() < 2 ? 0 : steps.size() - 1];
+        Arrays.fill(timeouts, stepTimeoutMillis);
+        return timeouts;
+    }
+
+    public List<Shortcut> getSteps() {
+        return Collections.unmodifiableList(Arrays.asList(steps));
+    }
+
+    /**
+     * @param step index of step.
+     * @return max time between step and the previous one, 0 for first step.
+     */
+    public long getStepTimeoutMillis(int step) {
+        return stepTimeoutsMillis[step];
+    }
+
+    Shortcut getStep(int step) {
+        return steps[step];
+    }
+
+    int size() {
+        return steps.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        return Arrays.equals(this.steps, ((ShortcutSequence) obj).steps);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(steps);
+    }
+
+    public static ShortcutSequence of(Shortcut... steps) {
+        return new ShortcutSequence(Arrays.asList(steps), DEFAULT_STEP_TIMEOUT_MILLIS);
+    }
+}
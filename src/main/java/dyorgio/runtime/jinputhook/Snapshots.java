@@ -0,0 +1,67 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.Arrays;
+
+/**
+ * Copy-on-write helpers for immutable listener arrays.<br>
+ * Writers create a new array and publish it on a volatile field, readers
+ * iterate the array they got without any lock.
+ *
+ * @author dyorgio
+ */
+final class Snapshots {
+
+    private Snapshots() {
+    }
+
+    /**
+     * @return new array with <code>item</code> or same array if it already
+     * contains <code>item</code>.
+     */
+    static <T> T[] add(T[] array, T item) {
+        if (indexOf(array, item) != -1) {
+            return array;
+        }
+        T[] newArray = Arrays.copyOf(array, array.length + 1);
+        newArray[array.length] = item;
+        return newArray;
+    }
+
+    /**
+     * @return new array without <code>item</code> or same array if it doesn't
+     * contain <code>item</code>.
+     */
+    static <T> T[] remove(T[] array, T item) {
+        int index = indexOf(array, item);
+        if (index == -1) {
+            return array;
+        }
+        T[] newArray = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, newArray, index, array.length - index - 1);
+        return newArray;
+    }
+
+    private static <T> int indexOf(T[] array, T item) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].equals(item)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,44 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link DispatchMode#VIRTUAL_THREADS} dispatcher.<br>
+ * This is the pre Java 21 version, that falls back to
+ * {@link ExecutorEventDispatcher}. Java 21+ version is on
+ * <code>src/main/java21</code> (multi-release JAR layer).
+ *
+ * @author dyorgio
+ */
+final class VirtualThreadEventDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreadEventDispatcher.class.getName());
+
+    private VirtualThreadEventDispatcher() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    static EventDispatcher create(EventDispatcher.Handler handler) {
+        LOGGER.log(Level.WARNING, "Virtual threads require Java 21+, using EXECUTOR dispatch mode.");
+        return new ExecutorEventDispatcher(handler);
+    }
+}
@@ -0,0 +1,161 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Linux <code>input-event-codes.h</code> KEY_* codes to JInput keys.
+ *
+ * @author dyorgio
+ */
+final class EvdevKeyMap {
+
+    // mapped codes are lower than it
+    static final int KEY_CODES = 256;
+
+    private static final Key[] KEYS = new Key[KEY_CODES];
+
+    static {
+        KEYS[1] = Key.ESCAPE;
+        KEYS[2] = Key._1;
+        KEYS[3] = Key._2;
+        KEYS[4] = Key._3;
+        KEYS[5] = Key._4;
+        KEYS[6] = Key._5;
+        KEYS[7] = Key._6;
+        KEYS[8] = Key._7;
+        KEYS[9] = Key._8;
+        KEYS[10] = Key._9;
+        KEYS[11] = Key._0;
+        KEYS[12] = Key.MINUS;
+        KEYS[13] = Key.EQUALS;
+        KEYS[14] = Key.BACK;
+        KEYS[15] = Key.TAB;
+        KEYS[16] = Key.Q;
+        KEYS[17] = Key.W;
+        KEYS[18] = Key.E;
+        KEYS[19] = Key.R;
+        KEYS[20] = Key.T;
+        KEYS[21] = Key.Y;
+        KEYS[22] = Key.U;
+        KEYS[23] = Key.I;
+        KEYS[24] = Key.O;
+        KEYS[25] = Key.P;
+        KEYS[26] = Key.LBRACKET;
+        KEYS[27] = Key.RBRACKET;
+        KEYS[28] = Key.RETURN;
+        KEYS[29] = Key.LCONTROL;
+        KEYS[30] = Key.A;
+        KEYS[31] = Key.S;
+        KEYS[32] = Key.D;
+        KEYS[33] = Key.F;
+        KEYS[34] = Key.G;
+        KEYS[35] = Key.H;
+        KEYS[36] = Key.J;
+        KEYS[37] = Key.K;
+        KEYS[38] = Key.L;
+        KEYS[39] = Key.SEMICOLON;
+        KEYS[40] = Key.APOSTROPHE;
+        KEYS[41] = Key.GRAVE;
+        KEYS[42] = Key.LSHIFT;
+        KEYS[43] = Key.BACKSLASH;
+        KEYS[44] = Key.Z;
+        KEYS[45] = Key.X;
+        KEYS[46] = Key.C;
+        KEYS[47] = Key.V;
+        KEYS[48] = Key.B;
+        KEYS[49] = Key.N;
+        KEYS[50] = Key.M;
+        KEYS[51] = Key.COMMA;
+        KEYS[52] = Key.PERIOD;
+        KEYS[53] = Key.SLASH;
+        KEYS[54] = Key.RSHIFT;
+        KEYS[55] = Key.MULTIPLY;
+        KEYS[56] = Key.LALT;
+        KEYS[57] = Key.SPACE;
+        KEYS[58] = Key.CAPITAL;
+        KEYS[59] = Key.F1;
+        KEYS[60] = Key.F2;
+        KEYS[61] = Key.F3;
+        KEYS[62] = Key.F4;
+        KEYS[63] = Key.F5;
+        KEYS[64] = Key.F6;
+        KEYS[65] = Key.F7;
+        KEYS[66] = Key.F8;
+        KEYS[67] = Key.F9;
+        KEYS[68] = Key.F10;
+        KEYS[69] = Key.NUMLOCK;
+        KEYS[70] = Key.SCROLL;
+        KEYS[71] = Key.NUMPAD7;
+        KEYS[72] = Key.NUMPAD8;
+        KEYS[73] = Key.NUMPAD9;
+        KEYS[74] = Key.SUBTRACT;
+        KEYS[75] = Key.NUMPAD4;
+        KEYS[76] = Key.NUMPAD5;
+        KEYS[77] = Key.NUMPAD6;
+        KEYS[78] = Key.ADD;
+        KEYS[79] = Key.NUMPAD1;
+        KEYS[80] = Key.NUMPAD2;
+        KEYS[81] = Key.NUMPAD3;
+        KEYS[82] = Key.NUMPAD0;
+        KEYS[83] = Key.DECIMAL;
+        KEYS[87] = Key.F11;
+        KEYS[88] = Key.F12;
+        KEYS[92] = Key.CONVERT;
+        KEYS[93] = Key.KANA;
+        KEYS[94] = Key.NOCONVERT;
+        KEYS[96] = Key.NUMPADENTER;
+        KEYS[97] = Key.RCONTROL;
+        KEYS[98] = Key.DIVIDE;
+        KEYS[99] = Key.SYSRQ;
+        KEYS[100] = Key.RALT;
+        KEYS[102] = Key.HOME;
+        KEYS[103] = Key.UP;
+        KEYS[104] = Key.PAGEUP;
+        KEYS[105] = Key.LEFT;
+        KEYS[106] = Key.RIGHT;
+        KEYS[107] = Key.END;
+        KEYS[108] = Key.DOWN;
+        KEYS[109] = Key.PAGEDOWN;
+        KEYS[110] = Key.INSERT;
+        KEYS[111] = Key.DELETE;
+        KEYS[116] = Key.POWER;
+        KEYS[117] = Key.NUMPADEQUAL;
+        KEYS[119] = Key.PAUSE;
+        KEYS[121] = Key.NUMPADCOMMA;
+        KEYS[124] = Key.YEN;
+        KEYS[125] = Key.LWIN;
+        KEYS[126] = Key.RWIN;
+        KEYS[127] = Key.APPS;
+        KEYS[128] = Key.STOP;
+        KEYS[142] = Key.SLEEP;
+        KEYS[183] = Key.F13;
+        KEYS[184] = Key.F14;
+        KEYS[185] = Key.F15;
+    }
+
+    private EvdevKeyMap() {
+    }
+
+    /**
+     * @param code evdev key code.
+     * @return mapped key or <code>null</code> if code has no JInput key.
+     */
+    static Key getKey(int code) {
+        return code >= 0 && code < KEYS.length ? KEYS[code] : null;
+    }
+}
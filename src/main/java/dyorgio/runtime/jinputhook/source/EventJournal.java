@@ -0,0 +1,104 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Binary format of event journals.<br>
+ * A 64 bytes header followed by fixed-size records of 32 bytes. Header keeps
+ * committed records count, written after each record, so a journal of a
+ * crashed process is still readable. Keys and devices names are written once,
+ * as definition records, before first event that uses them.
+ *
+ * <pre>
+ * header: int magic, int version, int record size, int 0, long records, long start nanos, long start millis
+ * KEY:    byte type, byte pressed, short key code, int device, long capture nanos, long source nanos
+ * KEY_NAME:    byte type, byte name length, short key code, UTF-8 name (max 28 bytes)
+ * DEVICE_NAME: byte type, byte name length, short 0, int device, UTF-8 name (max 24 bytes)
+ * </pre>
+ *
+ * @author dyorgio
+ */
+final class EventJournal {
+
+    static final int MAGIC = 0x4A49484A; // JIHJ
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+    /**
+     * Replay maps whole journal in one buffer.
+     */
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    static final int RECORDS_OFFSET = 16;
+    static final int START_NANOS_OFFSET = 24;
+    static final int START_MILLIS_OFFSET = 32;
+
+    static final byte KEY = 1;
+    static final byte KEY_NAME = 2;
+    static final byte DEVICE_NAME = 3;
+
+    static final int KEY_NAME_MAX = RECORD_SIZE - 4;
+    static final int DEVICE_NAME_MAX = RECORD_SIZE - 8;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static Map<String, Key> KEYS;
+
+    private EventJournal() {
+    }
+
+    /**
+     * @param name recorded key name.
+     * @return JInput key with name or {@link Key#UNKNOWN}.
+     */
+    static synchronized Key key(String name) {
+        if (KEYS == null) {
+            KEYS = new HashMap();
+            for (Field field : Key.class.getFields()) {
+                if (Modifier.isStatic(field.getModifiers()) && field.getType() == Key.class) {
+                    try {
+                        Key key = (Key) field.get(null);
+                        KEYS.put(key.getName(), key);
+                    } catch (IllegalAccessException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            }
+        }
+        Key key = KEYS.get(name);
+        return key == null ? Key.UNKNOWN : key;
+    }
+
+    /**
+     * @return UTF-8 bytes of value, truncated to max bytes.
+     */
+    static byte[] encode(String value, int max) {
+        byte[] bytes = value.getBytes(UTF8);
+        if (bytes.length <= max) {
+            return bytes;
+        }
+        byte[] truncated = new byte[max];
+        System.arraycopy(bytes, 0, truncated, 0, max);
+        return truncated;
+    }
+}
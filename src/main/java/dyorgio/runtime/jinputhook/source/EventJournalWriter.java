@@ -0,0 +1,294 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Append-only, memory-mapped writer of key transitions journals, replayed by
+ * {@link JournalKeyboardEventSource}.<br>
+ * Records are written straight to mapped memory (no system call per event),
+ * file is mapped by regions of {@value #REGION_SIZE} bytes, next region is
+ * mapped by a background thread (shared by all journals) when current one is
+ * half full (polling threads only wait for it if more than half a region is
+ * written before mapping completes). File is truncated after last record on
+ * close, space after last record is zero filled until then (readers use
+ * records count of header). Recording stops when journal reaches the size
+ * supported by replay (2GB).
+ *
+ * @author dyorgio
+ */
+public final class EventJournalWriter implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(EventJournalWriter.class.getName());
+
+    static final int REGION_SIZE = 16 * 1024 * 1024;
+
+    private final Path file;
+    private final long maxSize;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private Future<MappedByteBuffer> nextRegion;
+    private long position = EventJournal.HEADER_SIZE;
+    private long records;
+    private boolean closed;
+
+    private final Map<Key, Integer> keyCodes = new HashMap();
+    private final Map<Integer, Boolean> knownDevices = new HashMap();
+
+    /**
+     * Create (or replace) a journal.
+     *
+     * @param file journal file.
+     * @throws IOException if file cannot be created or mapped.
+     */
+    public EventJournalWriter(Path file) throws IOException {
+        this(file, EventJournal.MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize size that stops recording.
+     */
+    EventJournalWriter(Path file, long maxSize) throws IOException {
+        this.file = file;
+        this.maxSize = maxSize;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, EventJournal.HEADER_SIZE);
+            header.putInt(0, EventJournal.MAGIC);
+            header.putInt(4, EventJournal.VERSION);
+            header.putInt(8, EventJournal.RECORD_SIZE);
+            header.putLong(EventJournal.RECORDS_OFFSET, 0);
+            header.putLong(EventJournal.START_NANOS_OFFSET, System.nanoTime());
+            header.putLong(EventJournal.START_MILLIS_OFFSET, System.currentTimeMillis());
+            this.region = map(0);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private MappedByteBuffer map(long start) throws IOException {
+        // never grows file past max size, it may not be truncated on close
+        return channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(REGION_SIZE, maxSize - start));
+    }
+
+    /**
+     * Map next region on mapper thread (growing file and mapping can take
+     * milliseconds).
+     */
+    private void mapNextRegion() {
+        final long start = regionStart + REGION_SIZE;
+        nextRegion = Mapper.EXECUTOR.submit(new Callable<MappedByteBuffer>() {
+            @Override
+            public MappedByteBuffer call() throws IOException {
+                return map(start);
+            }
+        });
+    }
+
+    /**
+     * @return next region, mapped on current thread if background mapping
+     * failed.
+     */
+    private MappedByteBuffer takeNextRegion() throws IOException {
+        Future<MappedByteBuffer> next = nextRegion;
+        nextRegion = null;
+        if (next != null) {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return next.get();
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException ex) {
+                LOGGER.log(Level.FINE, "Cannot map next journal region on background", ex.getCause());
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return map(regionStart + REGION_SIZE);
+    }
+
+    /**
+     * Append a key transition, called from polling threads.
+     *
+     * @param deviceId device id.
+     * @param deviceName device name, recorded on first event of device.
+     * @param key key.
+     * @param pressed pressed or released.
+     * @param captureNanos {@link System#nanoTime()} when event was read.
+     * @param sourceNanos source timestamp, 0 if unknown.
+     * @return <code>false</code> if journal is closed or failed.
+     */
+    public synchronized boolean write(int deviceId, String deviceName, Key key, boolean pressed, long captureNanos, long sourceNanos) {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (knownDevices.get(deviceId) == null) {
+                byte[] name = EventJournal.encode(deviceName, EventJournal.DEVICE_NAME_MAX);
+                int offset = nextRecord();
+                region.put(offset, EventJournal.DEVICE_NAME);
+                region.put(offset + 1, (byte) name.length);
+                region.putInt(offset + 4, deviceId);
+                for (int i = 0; i < name.length; i++) {
+                    region.put(offset + 8 + i, name[i]);
+                }
+                commit();
+                knownDevices.put(deviceId, Boolean.TRUE);
+            }
+            Integer keyCode = keyCodes.get(key);
+            if (keyCode == null) {
+                keyCode = keyCodes.size();
+                byte[] name = EventJournal.encode(key.getName(), EventJournal.KEY_NAME_MAX);
+                int offset = nextRecord();
+                region.put(offset, EventJournal.KEY_NAME);
+                region.put(offset + 1, (byte) name.length);
+                region.putShort(offset + 2, keyCode.shortValue());
+                for (int i = 0; i < name.length; i++) {
+                    region.put(offset + 4 + i, name[i]);
+                }
+                commit();
+                keyCodes.put(key, keyCode);
+            }
+            int offset = nextRecord();
+            region.put(offset, EventJournal.KEY);
+            region.put(offset + 1, (byte) (pressed ? 1 : 0));
+            region.putShort(offset + 2, keyCode.shortValue());
+            region.putInt(offset + 4, deviceId);
+            region.putLong(offset + 8, captureNanos);
+            region.putLong(offset + 16, sourceNanos);
+            commit();
+            return true;
+        } catch (JournalFullException ex) {
+            LOGGER.log(Level.WARNING, "Journal {0} reached max size, recording stopped", file);
+            close();
+            return false;
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Cannot write journal " + file + ", recording stopped", ex);
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * @return offset of next record on current region.
+     */
+    private int nextRecord() throws IOException {
+        if (position + EventJournal.RECORD_SIZE > maxSize) {
+            throw new JournalFullException();
+        }
+        if (position + EventJournal.RECORD_SIZE > regionStart + REGION_SIZE) {
+            region = takeNextRegion();
+            regionStart += REGION_SIZE;
+        } else if (nextRegion == null && position - regionStart >= REGION_SIZE / 2 && regionStart + REGION_SIZE < maxSize) {
+            mapNextRegion();
+        }
+        return (int) (position - regionStart);
+    }
+
+    private void commit() {
+        position += EventJournal.RECORD_SIZE;
+        header.putLong(EventJournal.RECORDS_OFFSET, ++records);
+    }
+
+    /**
+     * @return records written, including keys and devices definitions.
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Flush records and truncate file after last record.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            header.force();
+            region.force();
+            if (nextRegion != null) {
+                // don't let a pending mapping grow file after truncate
+                takeNextRegion();
+            }
+            try {
+                channel.truncate(position);
+            } catch (IOException ex) {
+                // Windows refuses to truncate files with mapped regions
+                LOGGER.log(Level.WARNING, "Cannot truncate journal " + file + ", it keeps zero filled space after last record", ex);
+            }
+            channel.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Cannot close journal " + file, ex);
+        }
+    }
+
+    private static final class JournalFullException extends IOException {
+    }
+
+    /**
+     * Maps regions of all journals, its thread is created on first use and
+     * ends when idle.
+     */
+    private static final class Mapper {
+
+        private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(null, r, "JournalMapperThread", 64l * 1024l);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        static {
+            EXECUTOR.allowCoreThreadTimeOut(true);
+        }
+    }
+}
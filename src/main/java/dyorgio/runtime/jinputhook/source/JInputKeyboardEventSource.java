@@ -0,0 +1,266 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import dyorgio.runtime.jinputhook.OSDetector;
+import dyorgio.runtime.jinputhook.cleaner.JInputCleaner;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.java.games.input.Component;
+import net.java.games.input.Component.Identifier.Key;
+import net.java.games.input.Controller;
+import net.java.games.input.ControllerEnvironment;
+import net.java.games.input.Event;
+import net.java.games.input.EventQueue;
+import net.java.games.input.Keyboard;
+
+/**
+ * Default source, keyboards provided by JInput natives.
+ *
+ * @author dyorgio
+ */
+public final class JInputKeyboardEventSource implements KeyboardEventSource {
+
+    private static final Logger LOGGER = Logger.getLogger(JInputKeyboardEventSource.class.getName());
+
+    private final Map<String, JInputKeyboardDevice> openedDevices = new HashMap();
+
+    @Override
+    public synchronized List<KeyboardDevice> getDevices() throws Exception {
+        // controllers are released by new environment, don't read them until rebind
+        for (JInputKeyboardDevice device : openedDevices.values()) {
+            device.setStale();
+        }
+        Controller[] controllers = getDefaultEnvironment().getControllers();
+
+        List<KeyboardDevice> devices = new ArrayList();
+        Map<String, Integer> nameCount = new HashMap();
+        Map<String, JInputKeyboardDevice> currentDevices = new HashMap();
+        for (Controller controller : controllers) {
+            if (controller.getType() == Controller.Type.KEYBOARD) {
+                if (controller.getComponents() != null && controller.getComponents().length > 5) {
+                    // JInput has no stable device path, identical keyboards are distinguished by enumeration order
+                    Integer count = nameCount.get(controller.getName());
+                    count = count == null ? 0 : count + 1;
+                    nameCount.put(controller.getName(), count);
+                    String id = controller.getName() + "#" + count;
+
+                    JInputKeyboardDevice device = openedDevices.remove(id);
+                    if (device == null) {
+                        device = new JInputKeyboardDevice(id, (Keyboard) controller);
+                    } else {
+                        device.rebind((Keyboard) controller);
+                    }
+                    currentDevices.put(id, device);
+                    devices.add(device);
+                }
+            }
+        }
+        // removed devices
+        for (JInputKeyboardDevice device : openedDevices.values()) {
+            device.close();
+        }
+        openedDevices.clear();
+        openedDevices.putAll(currentDevices);
+        return devices;
+    }
+
+    @Override
+    public Path getDevicesDirectory() {
+        if (OSDetector.isLinux()) {
+            Path devicesDirectory = Paths.get("/dev/input");
+            if (Files.isDirectory(devicesDirectory)) {
+                return devicesDirectory;
+            }
+        }
+        return null;
+    }
+
+    private static ControllerEnvironment getDefaultEnvironment() {
+        try {
+            JInputCleaner.getInstance().cleanup();
+            Constructor<ControllerEnvironment> constructor = (Constructor<ControllerEnvironment>) Class.forName("net.java.games.input.DefaultControllerEnvironment").getDeclaredConstructors()[0];
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Keeps its queue (and last polled values) between scans, only JInput
+     * controller is replaced. Methods are synchronized because rebind is
+     * called by devices update thread.
+     */
+    private static final class JInputKeyboardDevice implements KeyboardDevice {
+
+        private final String id;
+        private final KeyboardEventQueue eventQueue;
+        private Keyboard keyboard;
+        private boolean stale;
+
+        private JInputKeyboardDevice(String id, Keyboard keyboard) {
+            this.id = id;
+            this.keyboard = keyboard;
+            if (OSDetector.isUnix()) {
+                eventQueue = new PollKeyboardEventQueue();
+            } else {
+                eventQueue = new JInputKeyboardEventQueue();
+            }
+            eventQueue.updateQueue(keyboard);
+        }
+
+        private synchronized void setStale() {
+            stale = true;
+        }
+
+        private synchronized void rebind(Keyboard newKeyboard) {
+            if (newKeyboard != keyboard) {
+                close();
+                keyboard = newKeyboard;
+                eventQueue.updateQueue(newKeyboard);
+            }
+            stale = false;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public synchronized String getName() {
+            return keyboard.getName();
+        }
+
+        @Override
+        public synchronized boolean poll() {
+            return stale || keyboard.poll();
+        }
+
+        @Override
+        public synchronized boolean getNextEvent(KeyboardEvent event) {
+            return !stale && eventQueue.getNextEvent(event);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (OSDetector.isMac()) {
+                try {
+                    Field queueField = keyboard.getClass().getDeclaredField("queue");
+                    queueField.setAccessible(true);
+                    Object queue = queueField.get(keyboard);
+                    Class queueClass = queue.getClass();
+                    Method queueReleaseMethod = queueClass.getDeclaredMethod("release");
+                    queueReleaseMethod.setAccessible(true);
+                    queueReleaseMethod.invoke(queue);
+                } catch (Exception ex) {
+                    LOGGER.log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return keyboard.toString();
+        }
+    }
+
+    private static interface KeyboardEventQueue {
+
+        void updateQueue(Keyboard keyboard);
+
+        boolean getNextEvent(KeyboardEvent event);
+    }
+
+    private static class PollKeyboardEventQueue implements KeyboardEventQueue {
+
+        private Component[] components;
+        private float[] previousValues;
+        private int lastIndex = 0;
+        private float lastValue;
+        private long scanNanos;
+
+        @Override
+        public void updateQueue(Keyboard keyboard) {
+            this.components = keyboard.getComponents();
+            if (previousValues == null || previousValues.length != components.length) {
+                previousValues = new float[components.length];
+                if (keyboard.poll()) {
+                    for (int i = 0; i < components.length; i++) {
+                        previousValues[i] = components[i].getPollData();
+                    }
+                }
+            }
+            lastIndex = 0;
+        }
+
+        @Override
+        public boolean getNextEvent(KeyboardEvent event) {
+            if (lastIndex == 0) {
+                // one timestamp per components scan, all changes were read by same poll
+                scanNanos = System.nanoTime();
+            }
+            for (int i = lastIndex; i < components.length; i++) {
+                lastValue = components[i].getPollData();
+                if (lastValue != previousValues[i]) {
+                    event.set((Key) components[i].getIdentifier(), lastValue > 0, scanNanos);
+                    previousValues[i] = lastValue;
+                    i++;
+                    if (i == components.length) {
+                        i = 0;
+                    }
+                    lastIndex = i;
+                    return true;
+                }
+            }
+
+            lastIndex = 0;
+            return false;
+        }
+
+    }
+
+    private static class JInputKeyboardEventQueue implements KeyboardEventQueue {
+
+        private final Event jinputEvent = new Event();
+        private EventQueue eventQueue;
+
+        @Override
+        public void updateQueue(Keyboard keyboard) {
+            this.eventQueue = keyboard.getEventQueue();
+        }
+
+        @Override
+        public boolean getNextEvent(KeyboardEvent event) {
+            if (eventQueue.getNextEvent(jinputEvent)) {
+                event.set((Key) jinputEvent.getComponent().getIdentifier(), jinputEvent.getValue() > 0, jinputEvent.getNanos());
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Replays a journal written by {@link EventJournalWriter}, one device per
+ * recorded device.<br>
+ * Events keep their recorded intervals (scaled by speed) or are replayed as
+ * fast as possible, useful to repeat production incidents and load profiles
+ * on machines without keyboards.
+ *
+ * @author dyorgio
+ */
+public final class JournalKeyboardEventSource implements KeyboardEventSource {
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final List<KeyboardDevice> devices;
+    private final AtomicLong replayedEvents = new AtomicLong();
+    private final AtomicInteger finishedDevices = new AtomicInteger();
+    private final AtomicLong replayStartNanos = new AtomicLong();
+    private final long journalStartNanos;
+    private final double speed;
+
+    /**
+     * Replay journal in real time.
+     *
+     * @param file journal file.
+     * @throws IOException if journal cannot be read.
+     */
+    public JournalKeyboardEventSource(Path file) throws IOException {
+        this(file, 1);
+    }
+
+    /**
+     * @param file journal file.
+     * @param speed replay speed multiplier (2 is twice as fast), zero or
+     * negative to replay as fast as possible.
+     * @throws IOException if journal cannot be read.
+     */
+    public JournalKeyboardEventSource(Path file, double speed) throws IOException {
+        this.file = file;
+        this.speed = speed;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Journal too large: " + file);
+            }
+            if (size < EventJournal.HEADER_SIZE) {
+                throw new IOException("Invalid journal: " + file);
+            }
+            // mapping remains valid after channel close
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(0) != EventJournal.MAGIC || buffer.getInt(4) != EventJournal.VERSION || buffer.getInt(8) != EventJournal.RECORD_SIZE) {
+            throw new IOException("Invalid journal: " + file);
+        }
+        long records = Math.min(buffer.getLong(EventJournal.RECORDS_OFFSET), (buffer.capacity() - EventJournal.HEADER_SIZE) / EventJournal.RECORD_SIZE);
+
+        Map<Integer, Key> keys = new HashMap();
+        Map<Integer, String> names = new HashMap();
+        Map<Integer, int[]> offsets = new LinkedHashMap();
+        Map<Integer, Integer> counts = new HashMap();
+        long firstNanos = 0;
+        for (int i = 0; i < records; i++) {
+            int offset = EventJournal.HEADER_SIZE + i * EventJournal.RECORD_SIZE;
+            switch (buffer.get(offset)) {
+                case EventJournal.KEY_NAME:
+                    keys.put((int) buffer.getShort(offset + 2), EventJournal.key(readString(offset + 4, buffer.get(offset + 1))));
+                    break;
+                case EventJournal.DEVICE_NAME:
+                    names.put(buffer.getInt(offset + 4), readString(offset + 8, buffer.get(offset + 1)));
+                    break;
+                case EventJournal.KEY:
+                    if (firstNanos == 0) {
+                        firstNanos = buffer.getLong(offset + 8);
+                    }
+                    int deviceId = buffer.getInt(offset + 4);
+                    int[] deviceOffsets = offsets.get(deviceId);
+                    int count = deviceOffsets == null ? 0 : counts.get(deviceId);
+                    if (deviceOffsets == null) {
+                        deviceOffsets = new int[64];
+                    } else if (count == deviceOffsets.length) {
+                        deviceOffsets = Arrays.copyOf(deviceOffsets, count * 2);
+                    }
+                    deviceOffsets[count] = offset;
+                    offsets.put(deviceId, deviceOffsets);
+                    counts.put(deviceId, count + 1);
+                    break;
+                default:
+                    throw new IOException("Invalid journal record " + i + ": " + file);
+            }
+        }
+        this.journalStartNanos = firstNanos;
+
+        List<KeyboardDevice> localDevices = new ArrayList();
+        for (Map.Entry<Integer, int[]> entry : offsets.entrySet()) {
+            String name = names.get(entry.getKey());
+            localDevices.add(new JournalKeyboardDevice(entry.getKey(), name == null ? "Journal Keyboard " + entry.getKey() : name, entry.getValue(), counts.get(entry.getKey()), keys));
+        }
+        this.devices = Collections.unmodifiableList(localDevices);
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length & 0xFF];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, EventJournal.UTF8);
+    }
+
+    @Override
+    public List<KeyboardDevice> getDevices() {
+        return devices;
+    }
+
+    @Override
+    public Path getDevicesDirectory() {
+        return null;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return key transitions replayed by all devices.
+     */
+    public long getReplayedEvents() {
+        return replayedEvents.get();
+    }
+
+    /**
+     * @return <code>true</code> when all events were replayed.
+     */
+    public boolean isFinished() {
+        return finishedDevices.get() == devices.size();
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of first replayed event of all
+     * devices, replay clock starts there.
+     */
+    private long replayStart() {
+        long start = replayStartNanos.get();
+        if (start == 0) {
+            replayStartNanos.compareAndSet(0, System.nanoTime());
+            start = replayStartNanos.get();
+        }
+        return start;
+    }
+
+    private final class JournalKeyboardDevice implements KeyboardDevice {
+
+        private final int journalId;
+        private final String name;
+        private final int[] offsets;
+        private final int count;
+        private final Map<Integer, Key> keys;
+        private int next;
+
+        private JournalKeyboardDevice(int journalId, String name, int[] offsets, int count, Map<Integer, Key> keys) {
+            this.journalId = journalId;
+            this.name = name;
+            this.offsets = offsets;
+            this.count = count;
+            this.keys = keys;
+        }
+
+        @Override
+        public String getId() {
+            return "journal:" + journalId;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean poll() {
+            return true;
+        }
+
+        @Override
+        public boolean getNextEvent(KeyboardEvent event) {
+            if (next == count) {
+                return false;
+            }
+            int offset = offsets[next];
+            if (speed > 0) {
+                long due = (long) ((buffer.getLong(offset + 8) - journalStartNanos) / speed);
+                if (System.nanoTime() - replayStart() < due) {
+                    return false;
+                }
+            }
+            Key key = keys.get((int) buffer.getShort(offset + 2));
+            event.set(key == null ? Key.UNKNOWN : key, buffer.get(offset + 1) != 0, buffer.getLong(offset + 16));
+            replayedEvents.incrementAndGet();
+            if (++next == count) {
+                finishedDevices.incrementAndGet();
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+/**
+ * One keyboard like device provided by a {@link KeyboardEventSource}.<br>
+ * Methods are called only from polling thread.
+ *
+ * @author dyorgio
+ */
+public interface KeyboardDevice {
+
+    /**
+     * Stable identity of device while it stays connected (device path, port,
+     * or name plus ordinal), unique inside one {@link KeyboardEventSource}.
+     * <br>
+     * JInputHook keeps pressed keys and listeners routing of a device with
+     * same id between devices updates.
+     *
+     * @return device id.
+     */
+    String getId();
+
+    String getName();
+
+    /**
+     * Refresh device state.
+     *
+     * @return <code>false</code> if device is not available anymore (forces
+     * a devices update).
+     */
+    boolean poll();
+
+    /**
+     * Fill <code>event</code> with next pending key transition.
+     *
+     * @param event reusable event instance.
+     * @return <code>true</code> if event was filled.
+     */
+    boolean getNextEvent(KeyboardEvent event);
+
+    /**
+     * Release resources when source returns another instance with same id on
+     * a new scan (devices removed from scan are released by source).
+     */
+    void close();
+}
@@ -0,0 +1,57 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Mutable key transition filled by a {@link KeyboardDevice}.<br>
+ * Instances are reused by the poll loop, never keep a reference to them.
+ *
+ * @author dyorgio
+ */
+public final class KeyboardEvent {
+
+    private Key key;
+    private boolean pressed;
+    private long nanos;
+
+    public void set(Key key, boolean pressed, long nanos) {
+        this.key = key;
+        this.pressed = pressed;
+        this.nanos = nanos;
+    }
+
+    public Key getKey() {
+        return key;
+    }
+
+    public boolean isPressed() {
+        return pressed;
+    }
+
+    /**
+     * @return event timestamp in nanoseconds, 0 if source doesn't provide it.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyboardEvent{" + "key=" + key + ", pressed=" + pressed + ", nanos=" + nanos + '}';
+    }
+}
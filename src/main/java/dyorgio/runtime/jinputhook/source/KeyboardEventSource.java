@@ -0,0 +1,49 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Provider of keyboard devices consumed by JInputHook.
+ *
+ * @author dyorgio
+ * @see JInputKeyboardEventSource
+ * @see SyntheticKeyboardEventSource
+ */
+public interface KeyboardEventSource {
+
+    /**
+     * Scan available keyboards.<br>
+     * Called on initialization and on every devices update, sources should
+     * return the same instance for devices still connected (see
+     * {@link KeyboardDevice#getId()}) and release removed ones.
+     *
+     * @return current keyboard devices.
+     * @throws Exception if devices cannot be enumerated.
+     */
+    List<KeyboardDevice> getDevices() throws Exception;
+
+    /**
+     * Directory where device nodes appear/disappear (like
+     * <code>/dev/input</code>), watched to update devices only on changes.
+     *
+     * @return devices directory or <code>null</code> to update devices
+     * periodically.
+     */
+    Path getDevicesDirectory();
+}
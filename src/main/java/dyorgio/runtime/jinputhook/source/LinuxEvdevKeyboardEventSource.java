@@ -0,0 +1,370 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import dyorgio.runtime.jinputhook.OSDetector;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Linux source that reads kernel <code>input_event</code> records directly
+ * from <code>/dev/input/event*</code>, without JInput natives.<br>
+ * Each device has a reader thread doing bulk reads into a direct buffer, the
+ * polling thread only drains already decoded events.<br>
+ * Event timestamps are the kernel ones (<code>CLOCK_REALTIME</code> by
+ * default) in nanoseconds.<br>
+ * When kernel buffer overflows (<code>SYN_DROPPED</code>), events up to next
+ * <code>SYN_REPORT</code> are skipped and all keys held by device are
+ * released, an autorepeat of a key still held presses it again.
+ *
+ * @author dyorgio
+ */
+public final class LinuxEvdevKeyboardEventSource implements KeyboardEventSource {
+
+    private static final Logger LOGGER = Logger.getLogger(LinuxEvdevKeyboardEventSource.class.getName());
+
+    private static final int EV_SYN = 0x00;
+    private static final int EV_KEY = 0x01;
+    private static final int SYN_REPORT = 0;
+    private static final int SYN_DROPPED = 3;
+    private static final int EVENTS_PER_READ = 64;
+    private static final int RING_SIZE = 1024;
+
+    private final Path devicesDirectory;
+    private final Path sysfsDirectory;
+    private final int eventSize;
+    private final Map<Path, EvdevKeyboardDevice> openedDevices = new HashMap();
+
+    /**
+     * Read keyboards from <code>/dev/input</code>, non keyboard devices are
+     * filtered using <code>/sys/class/input</code> capabilities.
+     */
+    public LinuxEvdevKeyboardEventSource() {
+        this(Paths.get("/dev/input"), Paths.get("/sys/class/input"));
+    }
+
+    /**
+     * Read every <code>event*</code> file of a directory as a keyboard (useful
+     * to replay recorded <code>input_event</code> bytes).
+     *
+     * @param devicesDirectory directory with <code>event*</code> files.
+     */
+    public LinuxEvdevKeyboardEventSource(Path devicesDirectory) {
+        this(devicesDirectory, null);
+    }
+
+    /**
+     * @param devicesDirectory directory with <code>event*</code> files.
+     * @param sysfsDirectory directory with devices capabilities,
+     * <code>null</code> to accept all devices.
+     */
+    public LinuxEvdevKeyboardEventSource(Path devicesDirectory, Path sysfsDirectory) {
+        this(devicesDirectory, sysfsDirectory, defaultEventSize());
+    }
+
+    /**
+     * @param devicesDirectory directory with <code>event*</code> files.
+     * @param sysfsDirectory directory with devices capabilities,
+     * <code>null</code> to accept all devices.
+     * @param eventSize size of kernel <code>input_event</code> struct (24 on
+     * 64-bit, 16 on 32-bit).
+     */
+    public LinuxEvdevKeyboardEventSource(Path devicesDirectory, Path sysfsDirectory, int eventSize) {
+        if (devicesDirectory == null) {
+            throw new IllegalArgumentException("Devices directory cannot be null.");
+        }
+        if (eventSize != 16 && eventSize != 24) {
+            throw new IllegalArgumentException("input_event size must be 16 or 24.");
+        }
+        this.devicesDirectory = devicesDirectory;
+        this.sysfsDirectory = sysfsDirectory;
+        this.eventSize = eventSize;
+    }
+
+    @Override
+    public synchronized List<KeyboardDevice> getDevices() throws Exception {
+        List<Path> paths = new ArrayList();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(devicesDirectory, "event*")) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+
+        // forget removed or failed devices
+        for (Iterator<Map.Entry<Path, EvdevKeyboardDevice>> it = openedDevices.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Path, EvdevKeyboardDevice> entry = it.next();
+            if (!paths.contains(entry.getKey()) || !entry.getValue().poll()) {
+                entry.getValue().close();
+                it.remove();
+            }
+        }
+
+        List<KeyboardDevice> devices = new ArrayList();
+        for (Path path : paths) {
+            EvdevKeyboardDevice device = openedDevices.get(path);
+            if (device == null) {
+                if (!Files.isReadable(path) || !isKeyboard(path)) {
+                    continue;
+                }
+                try {
+                    device = new EvdevKeyboardDevice(path, readName(path), eventSize);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.FINE, "Cannot open " + path, ex);
+                    continue;
+                }
+                openedDevices.put(path, device);
+            }
+            devices.add(device);
+        }
+        return devices;
+    }
+
+    @Override
+    public Path getDevicesDirectory() {
+        return devicesDirectory;
+    }
+
+    /**
+     * Open a single file or pipe with recorded <code>input_event</code> bytes
+     * as a keyboard.<br>
+     * Opening a pipe blocks until it has a writer.
+     *
+     * @param path file or pipe to read.
+     * @return opened device.
+     * @throws IOException if file cannot be opened.
+     */
+    public static KeyboardDevice openDevice(Path path) throws IOException {
+        return new EvdevKeyboardDevice(path, path.getFileName().toString(), defaultEventSize());
+    }
+
+    private boolean isKeyboard(Path path) {
+        if (sysfsDirectory == null) {
+            return true;
+        }
+        Path capabilities = sysfsDirectory.resolve(path.getFileName().toString()).resolve("device/capabilities/key");
+        try {
+            return isKeyboard(new String(Files.readAllBytes(capabilities), StandardCharsets.US_ASCII));
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @param keyBitmap key capabilities, hexadecimal words of
+     * <code>device/capabilities/key</code> (or <code>KEY=</code> of
+     * <code>/proc/bus/input/devices</code>).
+     * @return <code>true</code> if device has KEY_ESC..KEY_D, like udev
+     * expects of keyboards.
+     */
+    static boolean isKeyboard(String keyBitmap) {
+        String[] words = keyBitmap.trim().split("\\s+");
+        // lowest bits are in last word, 64 bits words don't fit on signed long
+        String lowestWord = words[words.length - 1];
+        try {
+            long lowestBits = Long.parseLong(lowestWord.substring(Math.max(0, lowestWord.length() - 8)), 16);
+            return (lowestBits & 0xFFFFFFFEL) == 0xFFFFFFFEL;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private String readName(Path path) {
+        if (sysfsDirectory != null) {
+            Path name = sysfsDirectory.resolve(path.getFileName().toString()).resolve("device/name");
+            try {
+                return new String(Files.readAllBytes(name), StandardCharsets.UTF_8).trim();
+            } catch (IOException ex) {
+                // use file name
+            }
+        }
+        return path.getFileName().toString();
+    }
+
+    private static int defaultEventSize() {
+        return OSDetector.isOSx86() ? 16 : 24;
+    }
+
+    private static final class EvdevKeyboardDevice implements KeyboardDevice {
+
+        private final String id;
+        private final String name;
+        private final FileChannel channel;
+        private final Thread readerThread;
+        private volatile boolean failed;
+
+        // single producer (reader thread) / single consumer (polling thread) ring
+        private final Key[] ringKeys = new Key[RING_SIZE];
+        private final boolean[] ringPressed = new boolean[RING_SIZE];
+        private final long[] ringNanos = new long[RING_SIZE];
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        // reader thread only, keys pressed by published events
+        private final boolean[] held = new boolean[EvdevKeyMap.KEY_CODES];
+        private boolean dropping;
+
+        private EvdevKeyboardDevice(final Path path, String name, final int eventSize) throws IOException {
+            this.id = path.toString();
+            this.name = name;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.readerThread = new Thread(null, null, "EvdevReaderThread-" + path.getFileName(), 16l * 1024l) {
+                {
+                    setDaemon(true);
+                }
+
+                @Override
+                public void run() {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(eventSize * EVENTS_PER_READ).order(ByteOrder.nativeOrder());
+                    try {
+                        while (!isInterrupted() && channel.read(buffer) != -1) {
+                            buffer.flip();
+                            while (buffer.remaining() >= eventSize) {
+                                long seconds, micros;
+                                if (eventSize == 24) {
+                                    seconds = buffer.getLong();
+                                    micros = buffer.getLong();
+                                } else {
+                                    seconds = buffer.getInt();
+                                    micros = buffer.getInt();
+                                }
+                                int type = buffer.getShort() & 0xFFFF;
+                                int code = buffer.getShort() & 0xFFFF;
+                                int value = buffer.getInt();
+                                decode(type, code, value, seconds * 1000000000L + micros * 1000L);
+                            }
+                            buffer.compact();
+                        }
+                    } catch (ClosedChannelException ex) {
+                        // closed or interrupted
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.FINE, "Problems reading " + path, ex);
+                        failed = true;
+                    } finally {
+                        try {
+                            channel.close();
+                        } catch (IOException ex) {
+                            // ignore
+                        }
+                    }
+                }
+            };
+            readerThread.start();
+        }
+
+        private void decode(int type, int code, int value, long nanos) {
+            if (type == EV_SYN) {
+                if (code == SYN_DROPPED) {
+                    dropping = true;
+                } else if (code == SYN_REPORT && dropping) {
+                    // kernel state is unknown, release everything
+                    dropping = false;
+                    for (int i = 0; i < held.length; i++) {
+                        if (held[i]) {
+                            held[i] = false;
+                            publish(EvdevKeyMap.getKey(i), false, nanos);
+                        }
+                    }
+                }
+            } else if (type == EV_KEY && !dropping) {
+                Key key = EvdevKeyMap.getKey(code);
+                // value 2 is autorepeat, a transition only if press was lost
+                boolean pressed = value != 0;
+                if (key != null && held[code] != pressed) {
+                    held[code] = pressed;
+                    publish(key, pressed, nanos);
+                }
+            }
+        }
+
+        private void publish(Key key, boolean pressed, long nanos) {
+            long index = head.get();
+            while (index - tail.get() == RING_SIZE) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                LockSupport.parkNanos(1000000L);
+            }
+            int slot = (int) (index & (RING_SIZE - 1));
+            ringKeys[slot] = key;
+            ringPressed[slot] = pressed;
+            ringNanos[slot] = nanos;
+            head.lazySet(index + 1);
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean poll() {
+            return !failed;
+        }
+
+        @Override
+        public boolean getNextEvent(KeyboardEvent event) {
+            long index = tail.get();
+            if (index == head.get()) {
+                return false;
+            }
+            int slot = (int) (index & (RING_SIZE - 1));
+            event.set(ringKeys[slot], ringPressed[slot], ringNanos[slot]);
+            tail.lazySet(index + 1);
+            return true;
+        }
+
+        @Override
+        public void close() {
+            readerThread.interrupt();
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * In-memory source that generates keystrokes (press + release) without any
+ * real keyboard, useful for load tests on headless machines.
+ *
+ * @author dyorgio
+ */
+public final class SyntheticKeyboardEventSource implements KeyboardEventSource {
+
+    private final List<KeyboardDevice> devices;
+    private final AtomicLong generatedEvents = new AtomicLong();
+
+    /**
+     * Create a source with uniform key distribution.
+     *
+     * @param deviceCount number of synthetic keyboards.
+     * @param keystrokesPerSecond keystrokes per second of each keyboard, zero
+     * or negative to generate as fast as possible.
+     * @param keys keys to type.
+     */
+    public SyntheticKeyboardEventSource(int deviceCount, int keystrokesPerSecond, Key... keys) {
+        this(deviceCount, keystrokesPerSecond, keys, null, System.nanoTime());
+    }
+
+    /**
+     * Create a source with weighted key distribution.
+     *
+     * @param deviceCount number of synthetic keyboards.
+     * @param keystrokesPerSecond keystrokes per second of each keyboard, zero
+     * or negative to generate as fast as possible.
+     * @param keys keys to type.
+     * @param weights relative weight of each key, <code>null</code> for
+     * uniform distribution.
+     * @param seed random seed, same seed generates same key sequence.
+     */
+    public SyntheticKeyboardEventSource(int deviceCount, int keystrokesPerSecond, Key[] keys, int[] weights, long seed) {
+        if (deviceCount < 1) {
+            throw new IllegalArgumentException("Device count must be 1 or more.");
+        }
+        if (keys == null || keys.length == 0 || Arrays.asList(keys).contains(null)) {
+            throw new IllegalArgumentException("Synthetic source must have 1 or more keys.");
+        }
+        if (weights != null && weights.length != keys.length) {
+            throw new IllegalArgumentException("Synthetic source must have one weight per key.");
+        }
+        int[] cumulativeWeights = new int[keys.length];
+        int total = 0;
+        for (int i = 0; i < keys.length; i++) {
+            int weight = weights == null ? 1 : weights[i];
+            if (weight < 0) {
+                throw new IllegalArgumentException("Key weight must be positive.");
+            }
+            if (total > Integer.MAX_VALUE - weight) {
+                throw new IllegalArgumentException("Sum of key weights is too large.");
+            }
+            total += weight;
+            cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one key must have weight.");
+        }
+
+        List<KeyboardDevice> localDevices = new ArrayList();
+        for (int i = 0; i < deviceCount; i++) {
+            localDevices.add(new SyntheticKeyboardDevice("Synthetic Keyboard " + (i + 1), keystrokesPerSecond, keys.clone(), cumulativeWeights, new Random(seed + i)));
+        }
+        this.devices = Collections.unmodifiableList(localDevices);
+    }
+
+    @Override
+    public List<KeyboardDevice> getDevices() {
+        return devices;
+    }
+
+    @Override
+    public Path getDevicesDirectory() {
+        return null;
+    }
+
+    /**
+     * @return total key transitions generated by all devices.
+     */
+    public long getGeneratedEvents() {
+        return generatedEvents.get();
+    }
+
+    private final class SyntheticKeyboardDevice implements KeyboardDevice {
+
+        private final String name;
+        private final int keystrokesPerSecond;
+        private final Key[] keys;
+        private final int[] cumulativeWeights;
+        private final Random random;
+        private final long startNanos = System.nanoTime();
+        private long keystrokes;
+        private Key pressedKey;
+
+        private SyntheticKeyboardDevice(String name, int keystrokesPerSecond, Key[] keys, int[] cumulativeWeights, Random random) {
+            this.name = name;
+            this.keystrokesPerSecond = keystrokesPerSecond;
+            this.keys = keys;
+            this.cumulativeWeights = cumulativeWeights;
+            this.random = random;
+        }
+
+        @Override
+        public String getId() {
+            // names are unique inside source
+            return name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean poll() {
+            return true;
+        }
+
+        @Override
+        public boolean getNextEvent(KeyboardEvent event) {
+            long now = System.nanoTime();
+            if (pressedKey != null) {
+                event.set(pressedKey, false, now);
+                pressedKey = null;
+            } else {
+                if (keystrokesPerSecond > 0 && keystrokes >= (now - startNanos) * keystrokesPerSecond / 1000000000L) {
+                    return false;
+                }
+                pressedKey = nextKey();
+                keystrokes++;
+                event.set(pressedKey, true, now);
+            }
+            generatedEvents.incrementAndGet();
+            return true;
+        }
+
+        private Key nextKey() {
+            int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int index = Arrays.binarySearch(cumulativeWeights, value + 1);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            // skip zero weight keys that share the same cumulative value
+            while (index > 0 && cumulativeWeights[index - 1] == cumulativeWeights[index]) {
+                index--;
+            }
+            return keys[index];
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DispatchMode#VIRTUAL_THREADS} dispatcher (Java 21+ layer of
+ * multi-release JAR).<br>
+ * Each dispatched listener of an event is invoked on a new virtual thread,
+ * so a blocking listener doesn't delay other listeners nor holds a platform
+ * thread. Events of a listener may be delivered out of order.
+ *
+ * @author dyorgio
+ */
+final class VirtualThreadEventDispatcher extends EventDispatcher {
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("FireEventsVirtualThread-", 1).factory());
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean closed;
+
+    private VirtualThreadEventDispatcher(Handler handler) {
+        super(handler);
+    }
+
+    static boolean isSupported() {
+        return true;
+    }
+
+    static EventDispatcher create(EventDispatcher.Handler handler) {
+        return new VirtualThreadEventDispatcher(handler);
+    }
+
+    @Override
+    void dispatch(DispatchEvent pollEvent) {
+        if (closed) {
+            return;
+        }
+        ListenerDelivery[] listeners = handler.getListeners(pollEvent);
+        DispatchEvent event = null;
+        for (ListenerDelivery listener : listeners) {
+            if (listener.dispatched) {
+                if (event == null) {
+                    // shared by all listeners tasks, never changed after copy
+                    event = new DispatchEvent();
+                    event.set(pollEvent);
+                }
+                final DispatchEvent taskEvent = event;
+                pending.incrementAndGet();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            listener.invoke(taskEvent);
+                        } finally {
+                            pending.decrementAndGet();
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    // shutdown after closed check
+                    pending.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    int getQueueDepth() {
+        return pending.get();
+    }
+
+    @Override
+    int getActiveThreads() {
+        return pending.get();
+    }
+
+    @Override
+    void shutdown() {
+        closed = true;
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,234 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Key, shortcut and device events as {@link Flow.Publisher} streams (Java 9+
+ * layer of multi-release JAR).<br>
+ * Each subscriber has its own bounded buffer: events are delivered only as
+ * requested by {@link Flow.Subscription#request(long)}, on the given
+ * executor, and {@link OverflowStrategy} is applied when subscriber doesn't
+ * keep up. Publishers can be subscribed many times, only after
+ * {@link JInputHook} initialization. Streams of a context complete when it is
+ * closed, streams fail if initialization fails.
+ *
+ * @author dyorgio
+ */
+public final class JInputHookFlow {
+
+    private static final Executor DEFAULT_EXECUTOR;
+
+    static {
+        if (ForkJoinPool.getCommonPoolParallelism() > 1) {
+            DEFAULT_EXECUTOR = ForkJoinPool.commonPool();
+        } else {
+            // same as SubmissionPublisher, common pool may not run tasks
+            DEFAULT_EXECUTOR = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    Thread thread = new Thread(null, command, "EventStreamThread", 64l * 1024l);
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            };
+        }
+    }
+
+    private JInputHookFlow() {
+    }
+
+    /**
+     * @return key pressed/released events of all devices, buffering
+     * {@link Flow#defaultBufferSize()} events with
+     * {@link OverflowStrategy#DROP_OLDEST}.
+     */
+    public static Flow.Publisher<HookEvent> keyEvents() {
+        return keyEvents(Flow.defaultBufferSize(), OverflowStrategy.DROP_OLDEST, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * @param bufferSize events kept per subscriber until requested.
+     * @param overflowStrategy what to do when buffer is full.
+     * @param executor executor of subscribers signals.
+     * @return key pressed/released events of all devices.
+     */
+    public static Flow.Publisher<HookEvent> keyEvents(int bufferSize, OverflowStrategy overflowStrategy, Executor executor) {
+        return new StreamPublisher(null, EventStream.KEYS, null, bufferSize, overflowStrategy, executor);
+    }
+
+    /**
+     * @param context context of events and listeners.
+     * @param bufferSize events kept per subscriber until requested.
+     * @param overflowStrategy what to do when buffer is full.
+     * @param executor executor of subscribers signals.
+     * @return key pressed/released events of all devices.
+     */
+    public static Flow.Publisher<HookEvent> keyEvents(JInputHookContext context, int bufferSize, OverflowStrategy overflowStrategy, Executor executor) {
+        checkContext(context);
+        return new StreamPublisher(context, EventStream.KEYS, null, bufferSize, overflowStrategy, executor);
+    }
+
+    /**
+     * @param shortcut shortcut.
+     * @return events of shortcut, buffering {@link Flow#defaultBufferSize()}
+     * events with {@link OverflowStrategy#DROP_OLDEST}.
+     */
+    public static Flow.Publisher<HookEvent> shortcutEvents(Shortcut shortcut) {
+        return shortcutEvents(shortcut, Flow.defaultBufferSize(), OverflowStrategy.DROP_OLDEST, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * @param shortcut shortcut.
+     * @param bufferSize events kept per subscriber until requested.
+     * @param overflowStrategy what to do when buffer is full.
+     * @param executor executor of subscribers signals.
+     * @return events of shortcut.
+     */
+    public static Flow.Publisher<HookEvent> shortcutEvents(Shortcut shortcut, int bufferSize, OverflowStrategy overflowStrategy, Executor executor) {
+        if (shortcut == null) {
+            throw new IllegalArgumentException("Shortcut cannot be null.");
+        }
+        return new StreamPublisher(null, EventStream.SHORTCUT, shortcut, bufferSize, overflowStrategy, executor);
+    }
+
+    /**
+     * @param context context of events and listeners.
+     * @param shortcut shortcut.
+     * @param bufferSize events kept per subscriber until requested.
+     * @param overflowStrategy what to do when buffer is full.
+     * @param executor executor of subscribers signals.
+     * @return events of shortcut.
+     */
+    public static Flow.Publisher<HookEvent> shortcutEvents(JInputHookContext context, Shortcut shortcut, int bufferSize, OverflowStrategy overflowStrategy, Executor executor) {
+        checkContext(context);
+        if (shortcut == null) {
+            throw new IllegalArgumentException("Shortcut cannot be null.");
+        }
+        return new StreamPublisher(context, EventStream.SHORTCUT, shortcut, bufferSize, overflowStrategy, executor);
+    }
+
+    /**
+     * @return device added/removed events, buffering
+     * {@link Flow#defaultBufferSize()} events with
+     * {@link OverflowStrategy#DROP_OLDEST}.
+     */
+    public static Flow.Publisher<HookEvent> deviceEvents() {
+        return deviceEvents(Flow.defaultBufferSize(), OverflowStrategy.DROP_OLDEST, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * @param bufferSize events kept per subscriber until requested.
+     * @param overflowStrategy what to do when buffer is full.
+     * @param executor executor of subscribers signals.
+     * @return device added/removed events.
+     */
+    public static Flow.Publisher<HookEvent> deviceEvents(int bufferSize, OverflowStrategy overflowStrategy, Executor executor) {
+        return new StreamPublisher(null, EventStream.DEVICES, null, bufferSize, overflowStrategy, executor);
+    }
+
+    /**
+     * @param context context of events and listeners.
+     * @param bufferSize events kept per subscriber until requested.
+     * @param overflowStrategy what to do when buffer is full.
+     * @param executor executor of subscribers signals.
+     * @return device added/removed events.
+     */
+    public static Flow.Publisher<HookEvent> deviceEvents(JInputHookContext context, int bufferSize, OverflowStrategy overflowStrategy, Executor executor) {
+        checkContext(context);
+        return new StreamPublisher(context, EventStream.DEVICES, null, bufferSize, overflowStrategy, executor);
+    }
+
+    private static void checkContext(JInputHookContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("Context cannot be null.");
+        }
+    }
+
+    private static final class StreamPublisher implements Flow.Publisher<HookEvent> {
+
+        // null for default context
+        private final JInputHookContext context;
+        private final int kind;
+        private final Shortcut shortcut;
+        private final int bufferSize;
+        private final OverflowStrategy overflowStrategy;
+        private final Executor executor;
+
+        private StreamPublisher(JInputHookContext context, int kind, Shortcut shortcut, int bufferSize, OverflowStrategy overflowStrategy, Executor executor) {
+            if (bufferSize < 1) {
+                throw new IllegalArgumentException("Buffer size must be positive.");
+            }
+            if (overflowStrategy == null || executor == null) {
+                throw new IllegalArgumentException("Overflow strategy and executor cannot be null.");
+            }
+            this.context = context;
+            this.kind = kind;
+            this.shortcut = shortcut;
+            this.bufferSize = bufferSize;
+            this.overflowStrategy = overflowStrategy;
+            this.executor = executor;
+        }
+
+        @Override
+        public void subscribe(final Flow.Subscriber<? super HookEvent> subscriber) {
+            if (subscriber == null) {
+                throw new NullPointerException("Subscriber cannot be null.");
+            }
+            final EventStream stream = new EventStream(kind, shortcut, bufferSize, overflowStrategy, executor, new EventStream.Sink() {
+                @Override
+                public void onNext(HookEvent event) {
+                    subscriber.onNext(event);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    subscriber.onError(error);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+            // before registration, so onComplete/onError never precede it
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    stream.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    stream.cancel();
+                }
+            });
+            try {
+                // events before first request are buffered
+                if (context == null) {
+                    JInputHook.addStream(stream);
+                } else {
+                    context.addStream(stream);
+                }
+            } catch (IllegalStateException ex) {
+                stream.terminate(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Bursts typed by a scripted scanner next to a scripted keyboard.
+ *
+ * @author dyorgio
+ */
+public class BurstListenerTest {
+
+    private static final int KEYBOARD = 0;
+    private static final int SCANNER = 1;
+    private static final long MAX_GAP_MILLIS = 30;
+
+    private static ScriptedKeyboardEventSource source;
+    private static final List<Burst> bursts = new CopyOnWriteArrayList();
+    private static final AtomicInteger keyEvents = new AtomicInteger();
+
+    @BeforeClass
+    public static void initialize() throws InterruptedException {
+        source = new ScriptedKeyboardEventSource(2);
+        JInputHook.initialize(source, new JInputHookOptions().setJmxEnabled(false).setBurstOptions(new BurstOptions()//
+                .setDevicePattern("scripted-" + SCANNER).setMaxGapMillis(MAX_GAP_MILLIS).setExclusive(true)));
+        JInputHook.addBurstListener(new BurstListener() {
+            @Override
+            public void burstCompleted(Burst burst) {
+                bursts.add(burst);
+            }
+        }, DeliveryPolicy.synchronous());
+        JInputHook.addListener(new GlobalKeyListener() {
+            @Override
+            public void keyPressed(Key key) {
+                keyEvents.incrementAndGet();
+            }
+
+            @Override
+            public void keyReleased(Key key) {
+                keyEvents.incrementAndGet();
+            }
+        }, DeliveryPolicy.synchronous());
+        source.awaitPolled();
+    }
+
+    @Before
+    public void reset() {
+        bursts.clear();
+        keyEvents.set(0);
+    }
+
+    @Test
+    public void terminatorCompletesBurst() throws InterruptedException {
+        source.press(SCANNER, Key.LSHIFT, Key.A);
+        source.release(SCANNER, Key.A, Key.LSHIFT);
+        type(SCANNER, Key.B, Key._1, Key._2, Key.RETURN);
+        source.awaitPolled();
+        assertEquals(1, bursts.size());
+        assertEquals("Ab12", bursts.get(0).getText());
+        assertEquals(5, bursts.get(0).getKeyCount());
+        assertEquals(Key.RETURN, bursts.get(0).getTerminator());
+        // exclusive scanner
+        assertEquals(0, keyEvents.get());
+    }
+
+    @Test
+    public void gapCompletesBurst() throws InterruptedException {
+        type(SCANNER, Key.A, Key.B, Key.C, Key.D);
+        source.awaitPolled();
+        Thread.sleep(MAX_GAP_MILLIS * 3);
+        source.awaitPolled();
+        assertEquals(1, bursts.size());
+        assertEquals("abcd", bursts.get(0).getText());
+        assertNull(bursts.get(0).getTerminator());
+    }
+
+    @Test
+    public void shortBurstIsDiscarded() throws InterruptedException {
+        type(SCANNER, Key.A, Key.B, Key.RETURN);
+        source.awaitPolled();
+        assertEquals(0, bursts.size());
+    }
+
+    @Test
+    public void otherDevicesTypeKeys() throws InterruptedException {
+        type(KEYBOARD, Key.A, Key.B, Key.C, Key.D, Key.RETURN);
+        source.awaitPolled();
+        assertEquals(0, bursts.size());
+        assertEquals(10, keyEvents.get());
+    }
+
+    private static void type(int device, Key... keys) {
+        for (Key key : keys) {
+            source.press(device, key);
+            source.release(device, key);
+        }
+    }
+}
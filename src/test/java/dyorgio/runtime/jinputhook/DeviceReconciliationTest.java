@@ -0,0 +1,131 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Devices plugged and unplugged on a scripted source, reconciled by stable
+ * device id.
+ *
+ * @author dyorgio
+ */
+public class DeviceReconciliationTest {
+
+    private static final Executor CALLER = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static ScriptedKeyboardEventSource source;
+
+    private final AtomicInteger triggered = new AtomicInteger();
+    private final Shortcut shortcut = Shortcut.fromKeys(Key.LCONTROL, Key.K);
+    private EventStreamTest.RecordingSink sink;
+    private EventStream stream;
+
+    @BeforeClass
+    public static void initialize() {
+        // identical keyboards
+        source = new ScriptedKeyboardEventSource(2, "Keyboard");
+        JInputHook.initialize(source, new JInputHookOptions().setJmxEnabled(false));
+    }
+
+    @Before
+    public void register() throws InterruptedException {
+        JInputHook.addShortcutListener(shortcut, new ShortcutListener() {
+            @Override
+            public void shortcutTriggered(Shortcut shortcut) {
+                triggered.incrementAndGet();
+            }
+        }, DeliveryPolicy.synchronous());
+        sink = new EventStreamTest.RecordingSink();
+        stream = new EventStream(EventStream.KEYS, null, 64, OverflowStrategy.DROP_LATEST, CALLER, sink);
+        JInputHook.addStream(stream);
+        stream.request(Long.MAX_VALUE);
+        source.awaitPolled();
+    }
+
+    @After
+    public void unregister() {
+        stream.cancel();
+        JInputHook.removeShortcutListener(shortcut);
+    }
+
+    @Test
+    public void identicalDevicesKeepSeparateState() throws InterruptedException {
+        source.press(0, Key.LCONTROL);
+        source.press(1, Key.K);
+        source.awaitPolled();
+        assertEquals(0, triggered.get());
+        assertEquals(2, sink.events.size());
+        assertEquals("Keyboard", sink.events.get(0).getDeviceName());
+        assertEquals("Keyboard", sink.events.get(1).getDeviceName());
+        assertNotEquals(sink.events.get(0).getDeviceId(), sink.events.get(1).getDeviceId());
+
+        source.release(0, Key.LCONTROL);
+        source.release(1, Key.K);
+        source.awaitPolled();
+    }
+
+    @Test
+    public void keptDevicesKeepPressedKeysAcrossUpdates() throws InterruptedException {
+        EventStreamTest.RecordingSink deviceSink = new EventStreamTest.RecordingSink();
+        EventStream deviceStream = new EventStream(EventStream.DEVICES, null, 16, OverflowStrategy.DROP_LATEST, CALLER, deviceSink);
+        JInputHook.addStream(deviceStream);
+        deviceStream.request(Long.MAX_VALUE);
+        try {
+            source.press(0, Key.LCONTROL);
+            source.awaitPolled();
+            int deviceId = sink.events.get(0).getDeviceId();
+
+            int plugged = source.plug("Keyboard");
+            source.requestUpdate(0);
+            source.awaitPolled();
+            source.press(0, Key.K);
+            source.release(0, Key.K, Key.LCONTROL);
+            source.awaitPolled();
+            assertEquals(1, triggered.get());
+            assertEquals(deviceId, sink.events.get(1).getDeviceId());
+            assertEquals(1, deviceSink.events.size());
+            assertEquals(HookEvent.Type.DEVICE_ADDED, deviceSink.events.get(0).getType());
+            int pluggedId = deviceSink.events.get(0).getDeviceId();
+            assertNotEquals(deviceId, pluggedId);
+
+            source.unplug(plugged);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (deviceSink.events.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            source.awaitPolled();
+            assertEquals(2, deviceSink.events.size());
+            assertEquals(HookEvent.Type.DEVICE_REMOVED, deviceSink.events.get(1).getType());
+            assertEquals(pluggedId, deviceSink.events.get(1).getDeviceId());
+        } finally {
+            deviceStream.cancel();
+        }
+    }
+}
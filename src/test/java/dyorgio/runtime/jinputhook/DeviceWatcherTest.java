@@ -0,0 +1,117 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Device nodes created and deleted on a temporary directory.
+ *
+ * @author dyorgio
+ */
+public class DeviceWatcherTest {
+
+    // longer than watcher settle time
+    private static final long QUIET_MILLIS = 750;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger changes = new AtomicInteger();
+    private final Runnable onChange = new Runnable() {
+        @Override
+        public void run() {
+            changes.incrementAndGet();
+        }
+    };
+    private DeviceWatcher watcher;
+
+    @After
+    public void stop() throws InterruptedException {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher.join(5000);
+        }
+    }
+
+    @Test
+    public void burstOfChangesRunsOnce() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        watcher = new DeviceWatcher(directory, "event*", 60000, onChange);
+        watcher.start();
+        // registration happens on watcher thread
+        Thread.sleep(QUIET_MILLIS);
+
+        Files.createFile(directory.resolve("event0"));
+        Files.createFile(directory.resolve("event1"));
+        directory.resolve("event1").toFile().setReadable(false);
+        awaitChanges(1);
+
+        Files.delete(directory.resolve("event0"));
+        Files.delete(directory.resolve("event1"));
+        awaitChanges(2);
+
+        Files.createFile(directory.resolve("mouse0"));
+        awaitChanges(2);
+    }
+
+    @Test
+    public void pollingWithoutWatchService() throws Exception {
+        // zip file systems don't support WatchService
+        URI uri = URI.create("jar:" + new File(folder.getRoot(), "devices.zip").toURI());
+        try (FileSystem fileSystem = FileSystems.newFileSystem(uri, Collections.singletonMap("create", "true"))) {
+            Path directory = fileSystem.getPath("/");
+            Files.createFile(directory.resolve("event0"));
+            watcher = new DeviceWatcher(directory, "event*", 50, onChange);
+            watcher.start();
+            awaitChanges(0);
+
+            Files.createFile(directory.resolve("event1"));
+            awaitChanges(1);
+
+            Files.delete(directory.resolve("event0"));
+            awaitChanges(2);
+
+            Files.createFile(directory.resolve("mouse0"));
+            awaitChanges(2);
+            stop();
+        }
+    }
+
+    /**
+     * Waits expected changes, then a quiet period without more changes.
+     */
+    private void awaitChanges(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (changes.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(QUIET_MILLIS);
+        assertEquals(expected, changes.get());
+    }
+}
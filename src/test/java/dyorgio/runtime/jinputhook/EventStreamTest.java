@@ -0,0 +1,218 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Demand, overflow and termination of {@link EventStream}, signals are run
+ * on caller thread.
+ *
+ * @author dyorgio
+ */
+public class EventStreamTest {
+
+    private static final Executor CALLER = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static ScriptedKeyboardEventSource source;
+
+    @BeforeClass
+    public static void initialize() {
+        source = new ScriptedKeyboardEventSource(1);
+        JInputHook.initialize(source, new JInputHookOptions().setJmxEnabled(false));
+    }
+
+    @Test
+    public void deliveryFollowsDemand() {
+        RecordingSink sink = new RecordingSink();
+        EventStream stream = new EventStream(EventStream.KEYS, null, 4, OverflowStrategy.DROP_LATEST, CALLER, sink);
+        stream.offer(event(Key.A));
+        assertEquals(0, sink.events.size());
+        stream.request(2);
+        stream.offer(event(Key.B));
+        stream.offer(event(Key.C));
+        assertKeys(sink, Key.A, Key.B);
+        stream.request(1);
+        assertKeys(sink, Key.A, Key.B, Key.C);
+    }
+
+    @Test
+    public void dropLatestKeepsBufferedEvents() {
+        RecordingSink sink = new RecordingSink();
+        EventStream stream = new EventStream(EventStream.KEYS, null, 2, OverflowStrategy.DROP_LATEST, CALLER, sink);
+        stream.offer(event(Key.A));
+        stream.offer(event(Key.B));
+        stream.offer(event(Key.C));
+        stream.request(3);
+        assertKeys(sink, Key.A, Key.B);
+        assertEquals(1, stream.getDropped());
+        assertTrue(sink.errors.isEmpty());
+    }
+
+    @Test
+    public void dropOldestKeepsNewEvents() {
+        RecordingSink sink = new RecordingSink();
+        EventStream stream = new EventStream(EventStream.KEYS, null, 2, OverflowStrategy.DROP_OLDEST, CALLER, sink);
+        stream.offer(event(Key.A));
+        stream.offer(event(Key.B));
+        stream.offer(event(Key.C));
+        stream.request(3);
+        assertKeys(sink, Key.B, Key.C);
+        assertEquals(1, stream.getDropped());
+        assertTrue(sink.errors.isEmpty());
+    }
+
+    @Test
+    public void errorOnOverflowFailsStream() {
+        RecordingSink sink = new RecordingSink();
+        EventStream stream = new EventStream(EventStream.KEYS, null, 2, OverflowStrategy.ERROR, CALLER, sink);
+        stream.offer(event(Key.A));
+        stream.offer(event(Key.B));
+        stream.offer(event(Key.C));
+        stream.request(3);
+        assertEquals(0, sink.events.size());
+        assertEquals(1, sink.errors.size());
+        assertTrue(sink.errors.get(0) instanceof IllegalStateException);
+        assertTrue(stream.isCancelled());
+    }
+
+    @Test
+    public void nonPositiveRequestFailsStream() {
+        RecordingSink sink = new RecordingSink();
+        EventStream stream = new EventStream(EventStream.KEYS, null, 2, OverflowStrategy.DROP_LATEST, CALLER, sink);
+        stream.offer(event(Key.A));
+        stream.request(0);
+        stream.request(1);
+        assertEquals(0, sink.events.size());
+        assertEquals(1, sink.errors.size());
+        assertTrue(sink.errors.get(0) instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void cancelStopsDelivery() {
+        RecordingSink sink = new RecordingSink();
+        EventStream stream = new EventStream(EventStream.KEYS, null, 2, OverflowStrategy.DROP_LATEST, CALLER, sink);
+        stream.request(1);
+        stream.offer(event(Key.A));
+        stream.offer(event(Key.B));
+        stream.cancel();
+        stream.request(1);
+        stream.offer(event(Key.C));
+        assertKeys(sink, Key.A);
+        assertTrue(sink.errors.isEmpty());
+        assertEquals(0, sink.completions);
+    }
+
+    @Test
+    public void registeredStreamReceivesTypedKeys() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        EventStream stream = new EventStream(EventStream.KEYS, null, 16, OverflowStrategy.DROP_LATEST, CALLER, sink);
+        JInputHook.addStream(stream);
+        stream.request(Long.MAX_VALUE);
+        source.awaitPolled();
+        source.press(0, Key.A);
+        source.release(0, Key.A);
+        source.awaitPolled();
+        assertEquals(2, sink.events.size());
+        assertEquals(HookEvent.Type.KEY_PRESSED, sink.events.get(0).getType());
+        assertEquals(HookEvent.Type.KEY_RELEASED, sink.events.get(1).getType());
+        assertEquals(Key.A, sink.events.get(1).getKey());
+
+        // cancelled stream is unregistered, other stream keeps pollers active
+        RecordingSink otherSink = new RecordingSink();
+        EventStream other = new EventStream(EventStream.KEYS, null, 16, OverflowStrategy.DROP_LATEST, CALLER, otherSink);
+        JInputHook.addStream(other);
+        other.request(Long.MAX_VALUE);
+        stream.cancel();
+        source.press(0, Key.B);
+        source.release(0, Key.B);
+        source.awaitPolled();
+        assertEquals(2, sink.events.size());
+        assertEquals(2, otherSink.events.size());
+        other.cancel();
+    }
+
+    @Test
+    public void terminateCompletesStream() {
+        RecordingSink sink = new RecordingSink();
+        EventStream stream = new EventStream(EventStream.KEYS, null, 4, OverflowStrategy.DROP_LATEST, CALLER, sink);
+        stream.offer(event(Key.A));
+        stream.terminate(null);
+        stream.request(1);
+        stream.offer(event(Key.B));
+        assertEquals(0, sink.events.size());
+        assertEquals(1, sink.completions);
+        assertTrue(sink.errors.isEmpty());
+    }
+
+    @Test
+    public void terminateWithCauseFailsStream() {
+        RecordingSink sink = new RecordingSink();
+        EventStream stream = new EventStream(EventStream.KEYS, null, 4, OverflowStrategy.DROP_LATEST, CALLER, sink);
+        IllegalStateException cause = new IllegalStateException("initialization failed");
+        stream.terminate(cause);
+        stream.terminate(null);
+        assertEquals(1, sink.errors.size());
+        assertEquals(cause, sink.errors.get(0));
+        assertEquals(0, sink.completions);
+    }
+
+    private static void assertKeys(RecordingSink sink, Key... keys) {
+        assertEquals(keys.length, sink.events.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i], sink.events.get(i).getKey());
+        }
+    }
+
+    static HookEvent event(Key key) {
+        return new HookEvent(HookEvent.Type.KEY_PRESSED, key, null, 0, "test", System.nanoTime());
+    }
+
+    static final class RecordingSink implements EventStream.Sink {
+
+        // written by polling threads on registered streams
+        final List<HookEvent> events = new CopyOnWriteArrayList();
+        final List<Throwable> errors = new CopyOnWriteArrayList();
+        volatile int completions;
+
+        @Override
+        public void onNext(HookEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            errors.add(error);
+        }
+
+        @Override
+        public void onComplete() {
+            completions++;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import dyorgio.runtime.jinputhook.source.KeyboardDevice;
+import dyorgio.runtime.jinputhook.source.KeyboardEventSource;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Asynchronous initialization that fails after listeners and streams were
+ * registered.
+ *
+ * @author dyorgio
+ */
+public class InitializationFailureTest {
+
+    @Test
+    public void failedInitializationFailsStreams() throws Exception {
+        final CountDownLatch registered = new CountDownLatch(1);
+        CompletableFuture<Void> initialization = JInputHook.initializeAsync(new KeyboardEventSource() {
+            @Override
+            public List<KeyboardDevice> getDevices() {
+                try {
+                    registered.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("No devices.");
+            }
+
+            @Override
+            public Path getDevicesDirectory() {
+                return null;
+            }
+        }, new JInputHookOptions().setJmxEnabled(false));
+        EventStreamTest.RecordingSink sink = new EventStreamTest.RecordingSink();
+        JInputHook.addStream(new EventStream(EventStream.KEYS, null, 16, OverflowStrategy.DROP_LATEST, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, sink));
+        registered.countDown();
+        try {
+            initialization.get(5, TimeUnit.SECONDS);
+            fail("Initialization must fail.");
+        } catch (ExecutionException ex) {
+            // failed before future completion
+            assertEquals(1, sink.errors.size());
+            assertEquals(ex.getCause(), sink.errors.get(0));
+        }
+    }
+}
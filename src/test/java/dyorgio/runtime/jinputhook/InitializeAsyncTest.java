@@ -0,0 +1,58 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Asynchronous initialization with listeners registered before its end.
+ *
+ * @author dyorgio
+ */
+public class InitializeAsyncTest {
+
+    @Test
+    public void listenersRegisteredBeforeCompletionReceiveKeys() throws Exception {
+        ScriptedKeyboardEventSource source = new ScriptedKeyboardEventSource(1);
+        CompletableFuture<Void> initialization = JInputHook.initializeAsync(source, new JInputHookOptions().setJmxEnabled(false));
+        final List<Key> pressed = new CopyOnWriteArrayList();
+        JInputHook.addListener(new GlobalKeyListener() {
+            @Override
+            public void keyPressed(Key key) {
+                pressed.add(key);
+            }
+
+            @Override
+            public void keyReleased(Key key) {
+            }
+        }, DeliveryPolicy.synchronous());
+        initialization.get(5, TimeUnit.SECONDS);
+        assertTrue(initialization.isDone() && !initialization.isCompletedExceptionally());
+        source.awaitPolled();
+        source.press(0, Key.A);
+        source.release(0, Key.A);
+        source.awaitPolled();
+        assertEquals(1, pressed.size());
+        assertEquals(Key.A, pressed.get(0));
+    }
+}
@@ -0,0 +1,135 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Contexts fed by a {@link PollingMode#PER_DEVICE} polling core.
+ *
+ * @author dyorgio
+ */
+public class JInputHookContextTest {
+
+    private static final int DEVICES = 2;
+    private static final int KEYSTROKES = 20000;
+
+    private static final Executor CALLER = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static ScriptedKeyboardEventSource source;
+
+    @BeforeClass
+    public static void initialize() {
+        source = new ScriptedKeyboardEventSource(DEVICES);
+        JInputHook.initialize(source, new JInputHookOptions().setJmxEnabled(false).setPollingMode(PollingMode.PER_DEVICE));
+    }
+
+    @Test
+    public void ringBufferContextReceivesAllDevices() throws InterruptedException {
+        // context options keep default polling mode, dispatcher follows core
+        JInputHookContext context = JInputHook.createContext(new JInputHookOptions()//
+                .setDispatchMode(DispatchMode.RING_BUFFER).setDispatchThreads(1).setRingBufferSize(16));
+        try {
+            CountingListener listener = new CountingListener();
+            context.addListener(listener);
+            source.awaitPolled();
+            type();
+            source.awaitPolled();
+            listener.await(DEVICES * KEYSTROKES * 2);
+            assertEquals(DEVICES * KEYSTROKES * 2, listener.events.get());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void closedContextDoesNotAffectOthers() throws InterruptedException {
+        JInputHookContext closing = JInputHook.createContext(new JInputHookOptions().setDispatchMode(DispatchMode.EXECUTOR));
+        JInputHookContext context = JInputHook.createContext(new JInputHookOptions().setDispatchMode(DispatchMode.EXECUTOR));
+        try {
+            CountingListener listener = new CountingListener();
+            closing.addListener(new CountingListener());
+            context.addListener(listener);
+            source.awaitPolled();
+            type();
+            closing.close();
+            source.awaitPolled();
+            listener.await(DEVICES * KEYSTROKES * 2);
+            assertEquals(DEVICES * KEYSTROKES * 2, listener.events.get());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void closedContextCompletesStreams() {
+        JInputHookContext context = JInputHook.createContext();
+        EventStreamTest.RecordingSink keys = new EventStreamTest.RecordingSink();
+        EventStreamTest.RecordingSink shortcuts = new EventStreamTest.RecordingSink();
+        EventStream keyStream = new EventStream(EventStream.KEYS, null, 16, OverflowStrategy.DROP_LATEST, CALLER, keys);
+        context.addStream(keyStream);
+        context.addStream(new EventStream(EventStream.SHORTCUT, Shortcut.fromKeys(Key.LCONTROL, Key.A), 16, OverflowStrategy.DROP_LATEST, CALLER, shortcuts));
+        context.close();
+        assertEquals(1, keys.completions);
+        assertEquals(1, shortcuts.completions);
+        keyStream.cancel();
+        assertEquals(1, keys.completions);
+    }
+
+    private static void type() {
+        for (int i = 0; i < KEYSTROKES; i++) {
+            for (int device = 0; device < DEVICES; device++) {
+                source.press(device, Key.A);
+                source.release(device, Key.A);
+            }
+        }
+    }
+
+    private static final class CountingListener implements GlobalKeyListener {
+
+        private final AtomicInteger events = new AtomicInteger();
+
+        @Override
+        public void keyPressed(Key key) {
+            events.incrementAndGet();
+        }
+
+        @Override
+        public void keyReleased(Key key) {
+            events.incrementAndGet();
+        }
+
+        /**
+         * Waits asynchronous delivery of expected events (at most 5s).
+         */
+        private void await(int expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.get() < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Pollers parked without listeners, resumed by first registration.
+ *
+ * @author dyorgio
+ */
+public class ParkedPollersTest {
+
+    private static ScriptedKeyboardEventSource source;
+
+    @BeforeClass
+    public static void initialize() {
+        source = new ScriptedKeyboardEventSource(2);
+        JInputHook.initialize(source, new JInputHookOptions().setJmxEnabled(false));
+    }
+
+    @Test
+    public void keysTypedAfterRegistrationAreDelivered() throws InterruptedException {
+        awaitParked();
+        // typed while parked
+        source.press(0, Key.A);
+        source.release(0, Key.A);
+        final List<Key> keys = new ArrayList();
+        GlobalKeyListener listener = new GlobalKeyListener() {
+            @Override
+            public void keyPressed(Key key) {
+                synchronized (keys) {
+                    keys.add(key);
+                }
+            }
+
+            @Override
+            public void keyReleased(Key key) {
+            }
+        };
+        JInputHook.addListener(listener, DeliveryPolicy.synchronous());
+        source.press(0, Key.B);
+        source.release(0, Key.B);
+        source.press(1, Key.C);
+        source.release(1, Key.C);
+        source.awaitPolled();
+        synchronized (keys) {
+            assertEquals(2, keys.size());
+            assertTrue(keys.contains(Key.B));
+            assertTrue(keys.contains(Key.C));
+        }
+        JInputHook.removeListener(listener);
+    }
+
+    @Test
+    public void pollersParkWithoutRegistrations() throws InterruptedException {
+        ShortcutListener listener = new ShortcutListener() {
+            @Override
+            public void shortcutTriggered(Shortcut shortcut) {
+            }
+        };
+        JInputHook.addShortcutListener(Shortcut.fromKeys(Key.LCONTROL, Key.P), listener);
+        source.awaitPolled();
+        JInputHook.removeShortcutListener(listener);
+        awaitParked();
+        long cycles = JInputHook.getMetrics().getPollCycles();
+        Thread.sleep(200);
+        assertEquals(cycles, JInputHook.getMetrics().getPollCycles());
+    }
+
+    @Test
+    public void shortcutRegistrationResumesPollers() throws InterruptedException {
+        final AtomicInteger triggered = new AtomicInteger();
+        Shortcut shortcut = Shortcut.fromKeys(Key.LCONTROL, Key.P);
+        JInputHook.addShortcutListener(shortcut, new ShortcutListener() {
+            @Override
+            public void shortcutTriggered(Shortcut shortcut) {
+                triggered.incrementAndGet();
+            }
+        }, DeliveryPolicy.synchronous());
+        source.press(1, Key.LCONTROL, Key.P);
+        source.release(1, Key.P, Key.LCONTROL);
+        source.awaitPolled();
+        assertEquals(1, triggered.get());
+        JInputHook.removeShortcutListener(shortcut);
+    }
+
+    /**
+     * Waits pollers to end current cycle and park (at most 5s).
+     */
+    private static void awaitParked() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        long cycles = -1;
+        while (cycles != JInputHook.getMetrics().getPollCycles() && System.currentTimeMillis() < deadline) {
+            cycles = JInputHook.getMetrics().getPollCycles();
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Overflow of {@link RingBufferEventDispatcher} rings.
+ *
+ * @author dyorgio
+ */
+public class RingBufferEventDispatcherTest {
+
+    private static final KeyboardState KEYBOARD = new KeyboardState(1, 0, null);
+
+    @Test
+    public void overflowDropsKeyPairs() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<String> delivered = new ArrayList();
+        RingBufferEventDispatcher dispatcher = new RingBufferEventDispatcher(new EventDispatcher.Handler() {
+            @Override
+            public ListenerDelivery[] getListeners(DispatchEvent event) {
+                return ListenerDelivery.EMPTY;
+            }
+
+            @Override
+            public void handle(DispatchEvent event) {
+                started.countDown();
+                try {
+                    blocked.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (delivered) {
+                    delivered.add(event.key + (event.type == DispatchEvent.KEY_PRESSED ? "+" : event.type == DispatchEvent.KEY_RELEASED ? "-" : "?"));
+                }
+            }
+        }, 1, 2, false);
+        try {
+            dispatcher.dispatch(event(DispatchEvent.KEY_PRESSED, Key.A));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // A keeps its slot until delivered, ring full after B
+            dispatcher.dispatch(event(DispatchEvent.KEY_PRESSED, Key.B));
+            dispatcher.dispatch(event(DispatchEvent.KEY_PRESSED, Key.C));
+            dispatcher.dispatch(event(DispatchEvent.KEY_PRESSED, Key.D));
+            dispatcher.dispatch(event(DispatchEvent.KEY_RELEASED, Key.D));
+            dispatcher.dispatch(event(DispatchEvent.KEY_RELEASED, Key.A));
+            dispatcher.dispatch(event(DispatchEvent.KEY_RELEASED, Key.B));
+            dispatcher.dispatch(event(DispatchEvent.SHORTCUT, Key.E));
+            // C, D, D release and shortcut
+            assertEquals(4, dispatcher.getDroppedEvents());
+            blocked.countDown();
+            dispatcher.dispatch(event(DispatchEvent.KEY_RELEASED, Key.C));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (System.currentTimeMillis() < deadline) {
+                synchronized (delivered) {
+                    if (delivered.size() == 4) {
+                        break;
+                    }
+                }
+                Thread.sleep(1);
+            }
+            synchronized (delivered) {
+                assertEquals(Arrays.asList(Key.A + "+", Key.B + "+", Key.A + "-", Key.B + "-"), delivered);
+            }
+            // release of dropped C
+            assertEquals(5, dispatcher.getDroppedEvents());
+        } finally {
+            blocked.countDown();
+            dispatcher.shutdown();
+        }
+    }
+
+    private static DispatchEvent event(int type, Key key) {
+        DispatchEvent event = new DispatchEvent();
+        event.set(KEYBOARD, type, key, null, null, null, null, System.nanoTime(), 0);
+        return event;
+    }
+}
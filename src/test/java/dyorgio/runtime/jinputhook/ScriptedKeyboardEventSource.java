@@ -0,0 +1,189 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import dyorgio.runtime.jinputhook.source.KeyboardDevice;
+import dyorgio.runtime.jinputhook.source.KeyboardEvent;
+import dyorgio.runtime.jinputhook.source.KeyboardEventSource;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Keyboards typing keys queued by tests.
+ *
+ * @author dyorgio
+ */
+final class ScriptedKeyboardEventSource implements KeyboardEventSource {
+
+    private static final long AWAIT_TIMEOUT = 5000;
+
+    // indexed by device number, unplugged devices included
+    private final List<ScriptedKeyboardDevice> devices = new CopyOnWriteArrayList();
+    private final List<KeyboardDevice> plugged = new CopyOnWriteArrayList();
+
+    ScriptedKeyboardEventSource(int deviceCount) {
+        this(deviceCount, null);
+    }
+
+    /**
+     * @param name name of all devices, <code>null</code> for their ids.
+     */
+    ScriptedKeyboardEventSource(int deviceCount, String name) {
+        for (int i = 0; i < deviceCount; i++) {
+            plug(name);
+        }
+    }
+
+    @Override
+    public List<KeyboardDevice> getDevices() {
+        return Collections.unmodifiableList(new ArrayList(plugged));
+    }
+
+    /**
+     * Adds a device, found on next devices update.
+     *
+     * @param name device name, <code>null</code> for its id.
+     * @return device number.
+     */
+    int plug(String name) {
+        String id = "scripted-" + devices.size();
+        ScriptedKeyboardDevice device = new ScriptedKeyboardDevice(id, name == null ? id : name);
+        devices.add(device);
+        plugged.add(device);
+        return devices.size() - 1;
+    }
+
+    /**
+     * Removes a device, its poller finds it removed.
+     */
+    void unplug(int device) {
+        plugged.remove(devices.get(device));
+        devices.get(device).unplugged = true;
+    }
+
+    /**
+     * Makes next poll of device fail, like a device error, so polling core
+     * updates devices.
+     */
+    void requestUpdate(int device) {
+        devices.get(device).failNextPoll = true;
+    }
+
+    @Override
+    public Path getDevicesDirectory() {
+        return null;
+    }
+
+    /**
+     * Queues key presses, in order.
+     */
+    void press(int device, Key... keys) {
+        for (Key key : keys) {
+            devices.get(device).queue.add(new Object[]{key, Boolean.TRUE});
+        }
+    }
+
+    /**
+     * Queues key releases, in order.
+     */
+    void release(int device, Key... keys) {
+        for (Key key : keys) {
+            devices.get(device).queue.add(new Object[]{key, Boolean.FALSE});
+        }
+    }
+
+    /**
+     * Waits pollers to read all queued keys and finish their cycle.
+     */
+    void awaitPolled() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT;
+        for (ScriptedKeyboardDevice device : devices) {
+            if (device.unplugged) {
+                continue;
+            }
+            while (!device.queue.isEmpty()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Keys of " + device.id + " not polled.");
+                }
+                Thread.sleep(1);
+            }
+            // next poll starts after cycle that read last key
+            long polls = device.polls.get();
+            while (device.polls.get() < polls + 2) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException(device.id + " not polled.");
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static final class ScriptedKeyboardDevice implements KeyboardDevice {
+
+        private final String id;
+        private final String name;
+        private final Queue<Object[]> queue = new ConcurrentLinkedQueue();
+        private final AtomicLong polls = new AtomicLong();
+        private volatile boolean unplugged;
+        private volatile boolean failNextPoll;
+
+        private ScriptedKeyboardDevice(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean poll() {
+            polls.incrementAndGet();
+            if (unplugged || failNextPoll) {
+                failNextPoll = false;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean getNextEvent(KeyboardEvent event) {
+            Object[] next = queue.poll();
+            if (next == null) {
+                return false;
+            }
+            event.set((Key) next[0], (Boolean) next[1], System.nanoTime());
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
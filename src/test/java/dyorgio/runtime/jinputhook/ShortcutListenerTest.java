@@ -0,0 +1,135 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Shortcuts matched by {@link ShortcutIndex} on a scripted keyboard.
+ *
+ * @author dyorgio
+ */
+public class ShortcutListenerTest {
+
+    private static ScriptedKeyboardEventSource source;
+
+    private final List<Shortcut> triggered = new CopyOnWriteArrayList();
+    private final ShortcutListener listener = new ShortcutListener() {
+        @Override
+        public void shortcutTriggered(Shortcut shortcut) {
+            triggered.add(shortcut);
+        }
+    };
+
+    @BeforeClass
+    public static void initialize() {
+        source = new ScriptedKeyboardEventSource(1);
+        JInputHook.initialize(source, new JInputHookOptions().setJmxEnabled(false));
+    }
+
+    @After
+    public void unregister() {
+        JInputHook.removeShortcutListener(listener);
+    }
+
+    @Test
+    public void equalShortcutsShareCanonicalInstance() throws InterruptedException {
+        Shortcut first = Shortcut.fromKeys(Key.LCONTROL, Key.LSHIFT, Key.D);
+        JInputHook.addShortcutListener(first, listener, DeliveryPolicy.synchronous());
+        assertTrue(JInputHook.addShortcutListener(Shortcut.fromKeys(Key.D, Key.LSHIFT, Key.LCONTROL), new ShortcutListener() {
+            @Override
+            public void shortcutTriggered(Shortcut shortcut) {
+                triggered.add(shortcut);
+            }
+        }, DeliveryPolicy.synchronous()));
+        type(Key.LCONTROL, Key.LSHIFT, Key.D);
+        assertEquals(2, triggered.size());
+        assertSame(first, triggered.get(0));
+        assertSame(first, triggered.get(1));
+        JInputHook.removeShortcutListener(first);
+    }
+
+    @Test
+    public void modifierClassesMatchBothSides() throws InterruptedException {
+        Shortcut anyControl = Shortcut.fromKeys(EnumSet.of(ModifierClass.CONTROL), Key.D);
+        Shortcut leftControl = Shortcut.fromKeys(Key.LCONTROL, Key.D);
+        JInputHook.addShortcutListener(anyControl, listener, DeliveryPolicy.synchronous());
+        JInputHook.addShortcutListener(leftControl, listener, DeliveryPolicy.synchronous());
+        type(Key.RCONTROL, Key.D);
+        assertEquals(1, triggered.size());
+        assertSame(anyControl, triggered.get(0));
+        type(Key.LCONTROL, Key.D);
+        assertEquals(3, triggered.size());
+    }
+
+    @Test
+    public void extraKeysDontMatch() throws InterruptedException {
+        JInputHook.addShortcutListener(Shortcut.fromKeys(Key.LCONTROL, Key.D), listener, DeliveryPolicy.synchronous());
+        type(Key.LCONTROL, Key.LSHIFT, Key.D);
+        type(Key.LALT, Key.D);
+        assertEquals(0, triggered.size());
+    }
+
+    @Test
+    public void manyShortcutsMatchOnlyPressedOne() throws InterruptedException {
+        Key[] letters = {Key.A, Key.B, Key.C, Key.D, Key.E, Key.F, Key.G, Key.H, Key.I, Key.J};
+        Key[] modifiers = {Key.LCONTROL, Key.RCONTROL, Key.LALT, Key.RALT, Key.LSHIFT, Key.RSHIFT};
+        for (Key modifier : modifiers) {
+            for (Key letter : letters) {
+                for (Key other : letters) {
+                    if (other != letter) {
+                        JInputHook.addShortcutListener(Shortcut.fromKeys(modifier, letter, other), listener, DeliveryPolicy.synchronous());
+                    }
+                }
+            }
+        }
+        type(Key.RALT, Key.E, Key.B);
+        assertEquals(1, triggered.size());
+        assertEquals(Shortcut.fromKeys(Key.RALT, Key.B, Key.E), triggered.get(0));
+
+        // another shortcut keeps pollers active
+        Shortcut other = Shortcut.fromKeys(Key.LCONTROL, Key.Z);
+        JInputHook.addShortcutListener(other, new ShortcutListener() {
+            @Override
+            public void shortcutTriggered(Shortcut shortcut) {
+            }
+        });
+        JInputHook.removeShortcutListener(listener);
+        type(Key.RALT, Key.E, Key.B);
+        assertEquals(1, triggered.size());
+        JInputHook.removeShortcutListener(other);
+    }
+
+    /**
+     * Presses keys in order and releases them in reverse order.
+     */
+    private static void type(Key... keys) throws InterruptedException {
+        source.press(0, keys);
+        for (int i = keys.length - 1; i >= 0; i--) {
+            source.release(0, keys[i]);
+        }
+        source.awaitPolled();
+    }
+}
@@ -0,0 +1,129 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Shortcut sequences typed on a scripted keyboard.
+ *
+ * @author dyorgio
+ */
+public class ShortcutSequenceListenerTest {
+
+    private static ScriptedKeyboardEventSource source;
+    private static final AtomicInteger triggered = new AtomicInteger();
+
+    @BeforeClass
+    public static void initialize() throws InterruptedException {
+        source = new ScriptedKeyboardEventSource(1);
+        JInputHook.initialize(source, new JInputHookOptions().setJmxEnabled(false));
+        JInputHook.addShortcutListener(ShortcutSequence.of(//
+                Shortcut.fromKeys(Key.LCONTROL, Key.K),//
+                Shortcut.fromKeys(Key.LCONTROL, Key.C)),//
+                new ShortcutListener() {
+            @Override
+            public void shortcutTriggered(Shortcut lastStep) {
+                triggered.incrementAndGet();
+            }
+        }, DeliveryPolicy.synchronous());
+        // poller resumes asynchronously after registration
+        source.awaitPolled();
+    }
+
+    @Before
+    public void reset() {
+        triggered.set(0);
+    }
+
+    @Test
+    public void consecutiveSteps() throws InterruptedException {
+        source.press(0, Key.LCONTROL, Key.K);
+        source.release(0, Key.K);
+        source.press(0, Key.C);
+        source.release(0, Key.C, Key.LCONTROL);
+        source.awaitPolled();
+        assertEquals(1, triggered.get());
+    }
+
+    @Test
+    public void interveningKeyBreaksSequence() throws InterruptedException {
+        source.press(0, Key.LCONTROL, Key.K);
+        source.release(0, Key.K, Key.LCONTROL);
+        source.press(0, Key.X);
+        source.release(0, Key.X);
+        source.press(0, Key.LCONTROL, Key.C);
+        source.release(0, Key.C, Key.LCONTROL);
+        source.awaitPolled();
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    public void modifierPressedAgainKeepsSequence() throws InterruptedException {
+        source.press(0, Key.LCONTROL, Key.K);
+        source.release(0, Key.K, Key.LCONTROL);
+        source.press(0, Key.LCONTROL, Key.C);
+        source.release(0, Key.C, Key.LCONTROL);
+        source.awaitPolled();
+        assertEquals(1, triggered.get());
+    }
+
+    @Test
+    public void overlappingStepsFollowAllSequences() throws InterruptedException {
+        final AtomicInteger exact = new AtomicInteger();
+        final AtomicInteger anyControl = new AtomicInteger();
+        ShortcutSequence exactSequence = ShortcutSequence.of(Shortcut.fromKeys(Key.LCONTROL, Key.K), Shortcut.fromKeys(Key.LALT, Key.C));
+        ShortcutSequence anyControlSequence = ShortcutSequence.of(Shortcut.fromKeys(EnumSet.of(ModifierClass.CONTROL), Key.K), Shortcut.fromKeys(Key.LALT, Key.D));
+        JInputHook.addShortcutListener(exactSequence, new ShortcutListener() {
+            @Override
+            public void shortcutTriggered(Shortcut lastStep) {
+                exact.incrementAndGet();
+            }
+        }, DeliveryPolicy.synchronous());
+        JInputHook.addShortcutListener(anyControlSequence, new ShortcutListener() {
+            @Override
+            public void shortcutTriggered(Shortcut lastStep) {
+                anyControl.incrementAndGet();
+            }
+        }, DeliveryPolicy.synchronous());
+        try {
+            source.press(0, Key.LCONTROL, Key.K);
+            source.release(0, Key.K, Key.LCONTROL);
+            source.press(0, Key.LALT, Key.D);
+            source.release(0, Key.D, Key.LALT);
+            source.press(0, Key.LCONTROL, Key.K);
+            source.release(0, Key.K, Key.LCONTROL);
+            source.press(0, Key.LALT, Key.C);
+            source.release(0, Key.C, Key.LALT);
+            source.press(0, Key.RCONTROL, Key.K);
+            source.release(0, Key.K, Key.RCONTROL);
+            source.press(0, Key.LALT, Key.C);
+            source.release(0, Key.C, Key.LALT);
+            source.awaitPolled();
+            assertEquals(1, exact.get());
+            assertEquals(1, anyControl.get());
+        } finally {
+            JInputHook.removeShortcutListener(exactSequence);
+            JInputHook.removeShortcutListener(anyControlSequence);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook;
+
+import dyorgio.runtime.jinputhook.source.SyntheticKeyboardEventSource;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import net.java.games.input.Component.Identifier.Key;
+
+/**
+ * Compares platform threads and dispatch latency of dispatch modes with
+ * blocking listeners (like HTTP or database calls).<br>
+ * Each mode runs on its own JVM. To load Java 21 layer run with packaged jar
+ * on a Java 21+ JVM:
+ *
+ * <pre>
+ * java -cp target/jinputhook-VERSION.jar:target/test-classes dyorgio.runtime.jinputhook.VirtualThreadDispatchBenchmark
+ * </pre>
+ *
+ * @author dyorgio
+ */
+public class VirtualThreadDispatchBenchmark {
+
+    private static final int KEYBOARDS = 4;
+    private static final int KEYSTROKES_PER_SECOND = 50;
+    private static final int LISTENERS = 4;
+    private static final long BLOCKING_MILLIS = 100;
+    private static final long DURATION_MILLIS = 5000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            for (DispatchMode mode : DispatchMode.values()) {
+                Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        VirtualThreadDispatchBenchmark.class.getName(), mode.name()).redirectErrorStream(true).start();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        System.out.println(line);
+                    }
+                }
+                process.waitFor();
+            }
+            return;
+        }
+
+        DispatchMode mode = DispatchMode.valueOf(args[0]);
+        JInputHook.initialize(new SyntheticKeyboardEventSource(KEYBOARDS, KEYSTROKES_PER_SECOND, Key.A, Key.S, Key.D, Key.F),
+                new JInputHookOptions().setDispatchMode(mode).setJmxEnabled(false));
+
+        GlobalKeyListener[] listeners = new GlobalKeyListener[LISTENERS];
+        for (int i = 0; i < LISTENERS; i++) {
+            listeners[i] = new GlobalKeyListener() {
+                @Override
+                public void keyPressed(Key key) {
+                    block();
+                }
+
+                @Override
+                public void keyReleased(Key key) {
+                    block();
+                }
+
+                private void block() {
+                    try {
+                        Thread.sleep(BLOCKING_MILLIS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            JInputHook.addListener(listeners[i]);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        Thread.sleep(DURATION_MILLIS);
+
+        long delivered = 0;
+        long latency = 0;
+        long maxLatency = 0;
+        for (GlobalKeyListener listener : listeners) {
+            DeliveryStats stats = JInputHook.getDeliveryStats(listener);
+            delivered += stats.getDelivered();
+            latency += stats.getDispatchLatencyNanos();
+            maxLatency = Math.max(maxLatency, stats.getMaxDispatchLatencyNanos());
+        }
+        System.out.println(String.format("%-16s java21Layer=%-5s delivered=%6d peakPlatformThreads=%4d avgLatencyMs=%8.2f maxLatencyMs=%8.2f queueDepth=%d",
+                mode, VirtualThreadEventDispatcher.isSupported(), delivered, threads.getPeakThreadCount(),
+                delivered == 0 ? 0d : latency / delivered / 1000000d, maxLatency / 1000000d, JInputHook.getDispatchQueueDepth()));
+        System.exit(0);
+    }
+}
@@ -0,0 +1,97 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Journals written by {@link EventJournalWriter} and read by
+ * {@link JournalKeyboardEventSource}.
+ *
+ * @author dyorgio
+ */
+public class EventJournalWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void truncatedOnClose() throws IOException {
+        Path file = new File(folder.getRoot(), "short.journal").toPath();
+        EventJournalWriter writer = new EventJournalWriter(file);
+        writer.write(1, "Keyboard", Key.A, true, 10, 0);
+        writer.write(1, "Keyboard", Key.A, false, 20, 0);
+        writer.close();
+        // device name, key name and 2 transitions
+        assertEquals(4, writer.getRecords());
+        assertEquals(EventJournal.HEADER_SIZE + 4 * EventJournal.RECORD_SIZE, Files.size(file));
+        assertFalse(writer.write(1, "Keyboard", Key.A, true, 30, 0));
+    }
+
+    @Test
+    public void writtenAcrossRegions() throws IOException {
+        Path file = new File(folder.getRoot(), "long.journal").toPath();
+        int transitions = 3 * EventJournalWriter.REGION_SIZE / EventJournal.RECORD_SIZE;
+        EventJournalWriter writer = new EventJournalWriter(file);
+        for (int i = 0; i < transitions; i++) {
+            assertTrue(writer.write(1, "Keyboard", Key.A, i % 2 == 0, i + 1, i));
+        }
+        writer.close();
+        assertEquals(EventJournal.HEADER_SIZE + (transitions + 2l) * EventJournal.RECORD_SIZE, Files.size(file));
+
+        JournalKeyboardEventSource source = new JournalKeyboardEventSource(file, 0);
+        assertEquals(1, source.getDevices().size());
+        KeyboardDevice device = source.getDevices().get(0);
+        assertEquals("Keyboard", device.getName());
+        KeyboardEvent event = new KeyboardEvent();
+        for (int i = 0; i < transitions; i++) {
+            assertTrue(device.getNextEvent(event));
+            assertEquals(Key.A, event.getKey());
+            assertEquals(i % 2 == 0, event.isPressed());
+            assertEquals(i, event.getNanos());
+        }
+        assertFalse(device.getNextEvent(event));
+        assertTrue(source.isFinished());
+    }
+
+    @Test
+    public void recordingStopsAtMaxSize() throws IOException {
+        Path file = new File(folder.getRoot(), "full.journal").toPath();
+        EventJournalWriter writer = new EventJournalWriter(file, EventJournal.HEADER_SIZE + 3 * EventJournal.RECORD_SIZE);
+        // device name, key name and press
+        assertTrue(writer.write(1, "Keyboard", Key.A, true, 10, 0));
+        assertFalse(writer.write(1, "Keyboard", Key.A, false, 20, 0));
+        assertFalse(writer.write(1, "Keyboard", Key.B, true, 30, 0));
+        assertEquals(3, writer.getRecords());
+        assertEquals(EventJournal.HEADER_SIZE + 3 * EventJournal.RECORD_SIZE, Files.size(file));
+
+        KeyboardDevice device = new JournalKeyboardEventSource(file, 0).getDevices().get(0);
+        KeyboardEvent event = new KeyboardEvent();
+        assertTrue(device.getNextEvent(event));
+        assertEquals(Key.A, event.getKey());
+        assertFalse(device.getNextEvent(event));
+    }
+}
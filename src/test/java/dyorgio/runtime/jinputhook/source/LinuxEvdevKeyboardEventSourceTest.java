@@ -0,0 +1,149 @@
+/** *****************************************************************************
+ * Copyright 2020 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ***************************************************************************** */
+package dyorgio.runtime.jinputhook.source;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.java.games.input.Component.Identifier.Key;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Key capabilities of devices (<code>KEY=</code> lines from
+ * <code>/proc/bus/input/devices</code> of a 64 bits kernel) and decoding of
+ * recorded <code>input_event</code> bytes.
+ *
+ * @author dyorgio
+ */
+public class LinuxEvdevKeyboardEventSourceTest {
+
+    private static final int EV_SYN = 0;
+    private static final int EV_KEY = 1;
+    private static final int EV_MSC = 4;
+    private static final int SYN_REPORT = 0;
+    private static final int SYN_DROPPED = 3;
+    private static final int KEY_LEFTCTRL = 29;
+    private static final int KEY_A = 30;
+    private static final int KEY_C = 46;
+    private static final int KEY_B = 48;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keyboardWith64BitsWords() {
+        // AT Translated Set 2 keyboard
+        assertTrue(LinuxEvdevKeyboardEventSource.isKeyboard("402000000 3803078f800d001 feffffdfffefffff fffffffffffffffe\n"));
+        // USB keyboard
+        assertTrue(LinuxEvdevKeyboardEventSource.isKeyboard("1000000000007 ff9f207ac14057ff febeffdfffefffff fffffffffffffffe"));
+    }
+
+    @Test
+    public void keyboardWith32BitsWords() {
+        assertTrue(LinuxEvdevKeyboardEventSource.isKeyboard("feffffdf fffeffff fffffffe"));
+    }
+
+    @Test
+    public void otherDevices() {
+        // Power Button
+        assertFalse(LinuxEvdevKeyboardEventSource.isKeyboard("10000000000000 0"));
+        // USB mouse
+        assertFalse(LinuxEvdevKeyboardEventSource.isKeyboard("1f0000 0 0 0 0"));
+        assertFalse(LinuxEvdevKeyboardEventSource.isKeyboard(""));
+        assertFalse(LinuxEvdevKeyboardEventSource.isKeyboard("not-hex"));
+    }
+
+    @Test
+    public void asianKeys() {
+        // KEY_HENKAN, KEY_KATAKANAHIRAGANA, KEY_MUHENKAN, KEY_YEN
+        assertEquals(Key.CONVERT, EvdevKeyMap.getKey(92));
+        assertEquals(Key.KANA, EvdevKeyMap.getKey(93));
+        assertEquals(Key.NOCONVERT, EvdevKeyMap.getKey(94));
+        assertEquals(Key.YEN, EvdevKeyMap.getKey(124));
+        // KEY_RO and KEY_HANJA have no JInput key
+        assertNull(EvdevKeyMap.getKey(89));
+        assertNull(EvdevKeyMap.getKey(123));
+    }
+
+    @Test
+    public void droppedEventsReleaseHeldKeys() throws Exception {
+        ByteBuffer events = ByteBuffer.allocate(24 * 32).order(ByteOrder.nativeOrder());
+        record(events, EV_MSC, 4, 0x1e);
+        record(events, EV_KEY, KEY_A, 1);
+        record(events, EV_SYN, SYN_REPORT, 0);
+        record(events, EV_KEY, KEY_A, 2);
+        record(events, EV_SYN, SYN_REPORT, 0);
+        record(events, EV_KEY, KEY_LEFTCTRL, 1);
+        record(events, EV_SYN, SYN_REPORT, 0);
+        // kernel buffer overflow, rest of the frame is incomplete
+        record(events, EV_SYN, SYN_DROPPED, 0);
+        record(events, EV_KEY, KEY_B, 1);
+        record(events, EV_SYN, SYN_REPORT, 0);
+        record(events, EV_KEY, KEY_C, 1);
+        record(events, EV_SYN, SYN_REPORT, 0);
+        // B was held, its autorepeat presses it again
+        record(events, EV_KEY, KEY_B, 2);
+        record(events, EV_SYN, SYN_REPORT, 0);
+        // release of a key already released by resync
+        record(events, EV_KEY, KEY_A, 0);
+        record(events, EV_SYN, SYN_REPORT, 0);
+
+        List<String> decoded = read(events);
+        List<String> expected = new ArrayList();
+        expected.add(Key.A + " pressed");
+        expected.add(Key.LCONTROL + " pressed");
+        expected.add(Key.LCONTROL + " released");
+        expected.add(Key.A + " released");
+        expected.add(Key.C + " pressed");
+        expected.add(Key.B + " pressed");
+        assertEquals(expected, decoded);
+    }
+
+    private static void record(ByteBuffer events, int type, int code, int value) {
+        events.putLong(1700000000L).putLong(events.position() / 24);
+        events.putShort((short) type).putShort((short) code).putInt(value);
+    }
+
+    private List<String> read(ByteBuffer events) throws Exception {
+        Files.write(folder.getRoot().toPath().resolve("event0"), Arrays.copyOf(events.array(), events.position()));
+        LinuxEvdevKeyboardEventSource source = new LinuxEvdevKeyboardEventSource(folder.getRoot().toPath(), null, 24);
+        KeyboardDevice device = source.getDevices().get(0);
+        List<String> decoded = new ArrayList();
+        KeyboardEvent event = new KeyboardEvent();
+        long deadline = System.currentTimeMillis() + 5000;
+        // reader thread stops on end of file, idle when nothing is decoded for 200ms
+        long idleSince = System.currentTimeMillis();
+        while (System.currentTimeMillis() < deadline && System.currentTimeMillis() - idleSince < 200) {
+            if (device.getNextEvent(event)) {
+                decoded.add(event.getKey() + (event.isPressed() ? " pressed" : " released"));
+                idleSince = System.currentTimeMillis();
+            } else {
+                Thread.sleep(1);
+            }
+        }
+        device.close();
+        return decoded;
+    }
+}